@@ -0,0 +1,193 @@
+package wtf.alexhan.thousandlines.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import wtf.alexhan.thousandlines.controller.UploadResourceController;
+import wtf.alexhan.thousandlines.service.ComicPackStore;
+import wtf.alexhan.thousandlines.service.ImageDerivativeService;
+import wtf.alexhan.thousandlines.service.StorageService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 漫画目录（loose）与打包文件（packed）对比：单页请求的延迟和删除整部漫画的耗时
+ *
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.includes=ComicPackBenchmark
+ *
+ * 每部漫画 40 页，每页一张原图和三张衍生图，和线上目录的文件数一致。
+ * 文件都在页缓存中，测得的是 open/stat 和目录遍历本身的开销；冷缓存下目录格式还要多出读取 inode 的磁盘 IO
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComicPackBenchmark {
+
+    private static final int PAGES = 40;
+    private static final int[] WIDTHS = {240, 720, 1440};
+    private static final int PAGE_SIZE = 256 * 1024;
+    private static final int SERVE_COMICS = 50;
+
+    @Param({"loose", "packed"})
+    private String layout;
+
+    private Path root;
+    private ExecutorService executor;
+    private StorageService storage;
+    private UploadResourceController controller;
+    private byte[] page;
+    private byte[] variant;
+
+    private final Random random = new Random(42);
+    private int deleteSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("jmh-comic-pack");
+        ImageDerivativeService derivatives = new ImageDerivativeService(WIDTHS, 0.82f, 40_000_000);
+        ComicPackStore packStore = new ComicPackStore(root.toString(), 1024);
+        executor = Executors.newSingleThreadExecutor();
+        // 基准数据没有 .blobs 清单，不会用到 BlobStore
+        storage = new StorageService(null, derivatives, packStore, executor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(storage, "uploadDir", root.toString());
+        controller = new UploadResourceController(root.toString(), derivatives, packStore);
+
+        page = new byte[PAGE_SIZE];
+        random.nextBytes(page);
+        variant = Arrays.copyOf(page, PAGE_SIZE / 4);
+        for (int i = 0; i < SERVE_COMICS; i++) {
+            writeComic("serve-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    /**
+     * 删除基准每次调用前准备一部新漫画，不计入耗时
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        private String folder;
+
+        @Setup(Level.Invocation)
+        public void prepare(ComicPackBenchmark benchmark) throws IOException {
+            folder = "delete-" + benchmark.deleteSequence++;
+            benchmark.writeComic(folder);
+        }
+    }
+
+    /**
+     * 阅读器的典型请求：随机漫画的随机一页，720 宽的衍生图
+     */
+    @Benchmark
+    public long servePage() throws IOException {
+        String uri = "/uploads/comics/serve-" + random.nextInt(SERVE_COMICS) + "/" + (random.nextInt(PAGES) + 1) + "@720.jpg";
+        CountingResponse response = new CountingResponse();
+        controller.serve(new MockHttpServletRequest("GET", uri), response);
+        return response.written;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void deleteComic(DeleteTarget target) throws IOException {
+        storage.deleteFolder(target.folder);
+    }
+
+    /**
+     * 原图和线上一样已落盘（线上是 fsync 过的内容文件的硬链接），否则删除未分配磁盘块的新文件会显得过快
+     */
+    private void writeComic(String folder) throws IOException {
+        Path directory = Files.createDirectories(root.resolve("comics").resolve(folder));
+        for (int p = 1; p <= PAGES; p++) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(p + ".jpg"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(page));
+                channel.force(true);
+            }
+            for (int width : WIDTHS) {
+                Files.write(directory.resolve(p + "@" + width + ".jpg"), variant);
+            }
+        }
+        if ("packed".equals(layout)) {
+            storage.packComicFolder(folder);
+        }
+    }
+
+    /**
+     * MockHttpServletResponse 每次写入都会复制已缓冲的内容，开销比被测代码大两个数量级；这里只计数不保存
+     */
+    private static class CountingResponse extends MockHttpServletResponse {
+        private long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ComicPackBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build()).run();
+    }
+}
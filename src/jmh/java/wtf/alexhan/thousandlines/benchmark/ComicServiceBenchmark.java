@@ -0,0 +1,309 @@
+package wtf.alexhan.thousandlines.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+import wtf.alexhan.thousandlines.ThousandLinesApplication;
+import wtf.alexhan.thousandlines.dto.ComicCard;
+import wtf.alexhan.thousandlines.dto.ComicFeed;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.service.ComicService;
+import wtf.alexhan.thousandlines.service.RelatedComicsService;
+import wtf.alexhan.thousandlines.service.SearchService;
+import wtf.alexhan.thousandlines.service.TagUsageService;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务层和数据访问热点路径的 JMH 基准：在 H2（MySQL 兼容模式）上启动完整的 JPA 层，
+ * 按 catalogSize 批量生成漫画、标签和用户后测量各个方法
+ *
+ * 运行：./mvnw -Pjmh test-compile exec:exec
+ *      数据规模：-Djmh.catalogSize=10000,100000,1000000（百万级建议 -Xmx8g）
+ *      只跑部分方法：-Djmh.includes=ComicServiceBenchmark.search
+ * 结果写入 target/jmh-result.json，不同提交的结果可用 JMH Visualizer 等工具对比
+ *
+ * 原来的 findPopularTags 聚合查询已由 tag_usage 计数表取代，对应基准为 popularTags
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class ComicServiceBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 5_000;
+    private static final int TAGS_PER_COMIC = 3;
+    private static final int PAGES_PER_UPLOAD = 8;
+
+    private static final String[] TITLE_WORDS = {"星辰", "旅人", "魔法", "学园", "剑士", "黄昏", "海岸", "机械",
+            "少女", "王国", "夜行", "怪谈", "Dragon", "Quest", "Shadow", "Garden", "Summer", "Code"};
+    private static final String[] AUTHORS = {"青木", "白川", "林间", "北原", "Mika", "Ren", "Sora", "夏目",
+            "山田", "K.Lee", "早川", "月野"};
+
+    @Param({"10000"})
+    private int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ComicService comicService;
+    private Path workDir;
+
+    private SessionUser creator;
+    private long maxComicId;
+    private final AtomicLong uploadSequence = new AtomicLong();
+    private final AtomicLong viewSequence = new AtomicLong();
+    private final AtomicLong relatedSequence = new AtomicLong();
+    private byte[] coverJpeg;
+    private byte[] pageJpeg;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("jmh-thousandlines");
+        context = new SpringApplicationBuilder(ThousandLinesApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        // 测量方法本身，不让缓存命中掩盖查询开销
+                        "spring.cache.type=none",
+                        "app.upload-dir=" + workDir.resolve("comics"),
+                        "app.upload-path=" + workDir.resolve("avatar"),
+                        "app.session.dir=" + workDir.resolve("sessions"),
+                        "app.password.bcrypt-strength=10",
+                        "logging.level.root=warn")
+                .run();
+
+        seed(context.getBean(JdbcTemplate.class));
+        // 种子数据绕过了服务层，重新加载内存索引和标签计数
+        context.getBean(SearchService.class).rebuildIndex();
+        context.getBean(TagUsageService.class).load();
+        context.getBean(RelatedComicsService.class).rebuild();
+
+        comicService = context.getBean(ComicService.class);
+        creator = new SessionUser(1L, "user_1", UserRole.CREATOR, null);
+        coverJpeg = syntheticJpeg(600, 800, 1);
+        pageJpeg = syntheticJpeg(1200, 1700, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public Page<ComicCard> searchComics() {
+        return comicService.searchComics("魔法", PageRequest.of(0, 12));
+    }
+
+    @Benchmark
+    public Page<ComicCard> advancedSearch() {
+        return comicService.advancedSearch("学园", "Sora", "热血", PageRequest.of(0, 12));
+    }
+
+    @Benchmark
+    public List<Object[]> popularTags() {
+        return comicService.getPopularTags(20);
+    }
+
+    @Benchmark
+    public Page<ComicCard> getPopularComics() {
+        return comicService.getPopularComics(PageRequest.of(0, 12));
+    }
+
+    /**
+     * 深分页：偏移分页需要扫描并丢弃前面的行，与游标分页对比
+     */
+    @Benchmark
+    public Page<ComicCard> getPopularComicsDeepPage() {
+        Pageable pageable = PageRequest.of(Math.max(0, catalogSize / 12 / 2), 12);
+        return comicService.getPopularComics(pageable);
+    }
+
+    @Benchmark
+    public ComicFeed getPopularFeed() {
+        return comicService.getPopularFeed(null, 12);
+    }
+
+    /**
+     * 每次换一部漫画，包含第一次访问时计算推荐列表的开销
+     */
+    @Benchmark
+    public List<ComicCard> getRelatedComics() {
+        return comicService.getRelatedComics(1 + (relatedSequence.getAndIncrement() % maxComicId), 4);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Comic incrementViewCount() {
+        Comic comic = new Comic();
+        comic.setId(1 + (viewSequence.getAndIncrement() % maxComicId));
+        comicService.incrementViewCount(comic);
+        return comic;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Comic uploadComic() throws IOException {
+        long sequence = uploadSequence.incrementAndGet();
+        MultipartFile[] pages = new MultipartFile[PAGES_PER_UPLOAD];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new MockMultipartFile("pages", (i + 1) + ".jpg", "image/jpeg",
+                    unique(pageJpeg, sequence * PAGES_PER_UPLOAD + i));
+        }
+
+        UploadComicRequest request = new UploadComicRequest();
+        request.setTitle("基准上传 " + sequence);
+        request.setAuthor(AUTHORS[(int) (sequence % AUTHORS.length)]);
+        request.setDescription("JMH 生成的漫画");
+        request.setTags(List.of("基准,热血," + tagName((int) (sequence % 50))));
+        request.setCoverImage(new MockMultipartFile("coverImage", "cover.jpg", "image/jpeg", unique(coverJpeg, sequence)));
+        request.setPages(pages);
+        return comicService.uploadComic(request, creator);
+    }
+
+    /**
+     * 用 JDBC 批量插入生成数据：用户数为漫画数的 1/10，标签数为 1/100（至少 100 个）
+     */
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int userCount = Math.max(10, catalogSize / 10);
+        int tagCount = Math.max(100, catalogSize / 100);
+
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 1; i <= userCount; i++) {
+            batch.add(new Object[]{"user_" + i, "$2a$10$" + "x".repeat(53), "user_" + i + "@example.com",
+                    i == 1 ? UserRole.CREATOR.name() : UserRole.USER.name(), now});
+            flushIfFull(jdbcTemplate, "INSERT INTO users (username, password, email, role, created_at) VALUES (?, ?, ?, ?, ?)", batch, i == userCount);
+        }
+
+        for (int i = 1; i <= tagCount; i++) {
+            batch.add(new Object[]{tagName(i - 1), now});
+            flushIfFull(jdbcTemplate, "INSERT INTO tags (name, created_at) VALUES (?, ?)", batch, i == tagCount);
+        }
+
+        String comicSql = "INSERT INTO comics (title, description, author, cover_image_path, folder_path, "
+                + "chapter_count, view_count, created_at, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        for (int i = 1; i <= catalogSize; i++) {
+            String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + i;
+            batch.add(new Object[]{title, "第 " + i + " 部测试漫画，" + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + "题材",
+                    AUTHORS[random.nextInt(AUTHORS.length)], "covers/seed.jpg", "seed-" + i, 1 + random.nextInt(40),
+                    // 长尾分布的浏览量
+                    (long) (Math.pow(random.nextDouble(), 4) * 1_000_000),
+                    Timestamp.valueOf(now.toLocalDateTime().minusMinutes(catalogSize - i)),
+                    1 + random.nextInt(userCount)});
+            flushIfFull(jdbcTemplate, comicSql, batch, i == catalogSize);
+        }
+
+        for (int i = 1; i <= catalogSize; i++) {
+            int first = random.nextInt(tagCount);
+            for (int k = 0; k < TAGS_PER_COMIC; k++) {
+                // 相邻 ID 不重复，满足联合主键
+                batch.add(new Object[]{i, 1 + (first + k) % tagCount});
+            }
+            flushIfFull(jdbcTemplate, "INSERT INTO comic_tags (comic_id, tag_id) VALUES (?, ?)", batch, i == catalogSize);
+        }
+        maxComicId = catalogSize;
+    }
+
+    private static void flushIfFull(JdbcTemplate jdbcTemplate, String sql, List<Object[]> batch, boolean last) {
+        if (batch.size() >= SEED_BATCH_SIZE || (last && !batch.isEmpty())) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            batch.clear();
+        }
+    }
+
+    private static String tagName(int index) {
+        String[] common = {"热血", "恋爱", "奇幻", "校园", "科幻", "悬疑", "日常", "冒险"};
+        return index < common.length ? common[index] : "标签" + index;
+    }
+
+    /**
+     * 渐变加色块的合成页面，压缩后大小接近真实漫画页
+     */
+    private static byte[] syntheticJpeg(int width, int height, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int y = 0; y < height; y += 4) {
+                g.setColor(new Color(255 * y / height, 180, 255 - 255 * y / height));
+                g.fillRect(0, y, width, 4);
+            }
+            for (int i = 0; i < 200; i++) {
+                g.setColor(new Color(random.nextInt(0xFFFFFF)));
+                g.fillRect(random.nextInt(width), random.nextInt(height), 10 + random.nextInt(120), 10 + random.nextInt(120));
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 在 JPEG 结束标记后追加序号，图片内容不变但哈希不同，避免内容寻址存储直接去重
+     */
+    private static byte[] unique(byte[] jpeg, long sequence) {
+        return ByteBuffer.allocate(jpeg.length + Long.BYTES).put(jpeg).putLong(sequence).array();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ComicServiceBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build()).run();
+    }
+}
@@ -0,0 +1,192 @@
+package wtf.alexhan.thousandlines.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.session.MapSession;
+import org.springframework.util.FileSystemUtils;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.session.FileSessionStore;
+import wtf.alexhan.thousandlines.session.SessionCodec;
+import wtf.alexhan.thousandlines.session.SessionStore;
+import wtf.alexhan.thousandlines.session.StoreSession;
+import wtf.alexhan.thousandlines.session.StoreSessionRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外置会话每个请求的读写开销：读取会话、更新访问时间（可选修改属性），请求结束时保存
+ *
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.includes=SessionStoreBenchmark
+ *
+ * store 参数对比内存存储和文件存储；encodeCompact / encodeMapSession 对比紧凑编码与 Java 序列化 MapSession，
+ * 两者的数据大小在启动时打印一次
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionStoreBenchmark {
+
+    private static final int SESSIONS = 1_000;
+
+    /**
+     * 预先保存了 SESSIONS 个登录会话的存储
+     */
+    @State(Scope.Benchmark)
+    public static class Sessions {
+        @Param({"memory", "file"})
+        private String store;
+
+        private Path directory;
+        private StoreSessionRepository repository;
+        private final List<String> ids = new ArrayList<>(SESSIONS);
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            SessionStore sessionStore;
+            if ("file".equals(store)) {
+                directory = Files.createTempDirectory("jmh-session-store");
+                sessionStore = new FileSessionStore(directory);
+            } else {
+                sessionStore = new InMemorySessionStore();
+            }
+            repository = new StoreSessionRepository(sessionStore, Duration.ofMinutes(30), 10);
+            for (int i = 0; i < SESSIONS; i++) {
+                StoreSession session = repository.createSession();
+                session.setAttribute(SessionUser.SESSION_ATTRIBUTE,
+                        new SessionUser((long) i, "user_" + i, UserRole.USER, "avatar/user_" + i + ".jpg"));
+                repository.save(session);
+                ids.add(session.getId());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (directory != null) {
+                FileSystemUtils.deleteRecursively(directory);
+            }
+        }
+
+        private String nextId() {
+            next = (next + 1) % SESSIONS;
+            return ids.get(next);
+        }
+    }
+
+    /**
+     * 只读请求：属性不变，只有访问时间变化
+     */
+    @Benchmark
+    public StoreSession readOnlyRequest(Sessions sessions) {
+        StoreSession session = sessions.repository.findById(sessions.nextId());
+        session.setLastAccessedTime(Instant.now());
+        sessions.repository.save(session);
+        return session;
+    }
+
+    /**
+     * 修改属性的请求：每次都要写回存储
+     */
+    @Benchmark
+    public StoreSession modifyingRequest(Sessions sessions) {
+        StoreSession session = sessions.repository.findById(sessions.nextId());
+        session.setLastAccessedTime(Instant.now());
+        session.setAttribute("lastPage", sessions.next);
+        sessions.repository.save(session);
+        return session;
+    }
+
+    /**
+     * 会话编码的对比数据，与存储无关
+     */
+    @State(Scope.Benchmark)
+    public static class Codec {
+        private SessionCodec.Snapshot snapshot;
+        private MapSession mapSession;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            SessionUser user = new SessionUser(42L, "user_42", UserRole.CREATOR, "avatar/user_42.jpg");
+            mapSession = new MapSession();
+            mapSession.setAttribute(SessionUser.SESSION_ATTRIBUTE, user);
+            snapshot = new SessionCodec.Snapshot(mapSession.getId(), mapSession.getCreationTime(),
+                    mapSession.getLastAccessedTime(), mapSession.getMaxInactiveInterval(),
+                    Map.of(SessionUser.SESSION_ATTRIBUTE, user));
+            System.out.println("会话数据大小：紧凑编码 " + SessionCodec.encode(snapshot).length
+                    + " 字节，Java 序列化 MapSession " + serialize(mapSession).length + " 字节");
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeCompact(Codec codec) throws IOException {
+        return SessionCodec.encode(codec.snapshot);
+    }
+
+    @Benchmark
+    public byte[] encodeMapSession(Codec codec) throws IOException {
+        return serialize(codec.mapSession);
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class InMemorySessionStore implements SessionStore {
+        private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+
+        @Override
+        public byte[] load(String sessionId) {
+            return data.get(sessionId);
+        }
+
+        @Override
+        public void save(String sessionId, byte[] value, Instant expiresAt) {
+            data.put(sessionId, value);
+        }
+
+        @Override
+        public void delete(String sessionId) {
+            data.remove(sessionId);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SessionStoreBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build()).run();
+    }
+}
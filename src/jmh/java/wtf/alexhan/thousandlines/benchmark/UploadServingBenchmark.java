@@ -0,0 +1,188 @@
+package wtf.alexhan.thousandlines.benchmark;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import wtf.alexhan.thousandlines.controller.UploadResourceController;
+import wtf.alexhan.thousandlines.service.ComicPackStore;
+import wtf.alexhan.thousandlines.service.ImageDerivativeService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /uploads 文件服务吞吐量对比：原来的 ResourceHttpRequestHandler（resource）与 UploadResourceController（controller）
+ *
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.includes=UploadServingBenchmark
+ *
+ * 分别测量完整下载、浏览器翻页回看时的条件请求和 64KB 的 Range 请求。条件请求使用各自响应里的校验器：
+ * ResourceHttpRequestHandler 默认不生成 ETag，用 If-Modified-Since；控制器用 If-None-Match。
+ * Mock 环境下不会走 Tomcat sendfile，测得的是处理器本身的开销，部署后完整下载还会省去用户态拷贝
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadServingBenchmark {
+
+    private static final int PAGE_SIZE = 512 * 1024;
+    private static final String URI = "/uploads/comics/bench/1.jpg";
+    private static final String PATH = "comics/bench/1.jpg";
+
+    @Param({"resource", "controller"})
+    private String handler;
+
+    private Path root;
+    private ResourceHttpRequestHandler resourceHandler;
+    private UploadResourceController controller;
+    private String conditionalHeader;
+    private String conditionalValue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("jmh-upload-serving");
+        Path page = Files.createDirectories(root.resolve("comics").resolve("bench")).resolve("1.jpg");
+        byte[] content = new byte[PAGE_SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(page, content);
+
+        resourceHandler = new ResourceHttpRequestHandler();
+        resourceHandler.setServletContext(new MockServletContext());
+        resourceHandler.setLocations(List.of(new FileSystemResource(root + "/")));
+        resourceHandler.afterPropertiesSet();
+        controller = new UploadResourceController(root.toString(),
+                new ImageDerivativeService(new int[]{240, 720, 1440}, 0.82f, 40_000_000), new ComicPackStore(root.toString(), 16));
+
+        // 先完整请求一次，取出响应里的校验器
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        serve(request(), first);
+        if (first.getHeader(HttpHeaders.ETAG) != null) {
+            conditionalHeader = HttpHeaders.IF_NONE_MATCH;
+            conditionalValue = first.getHeader(HttpHeaders.ETAG);
+        } else {
+            conditionalHeader = HttpHeaders.IF_MODIFIED_SINCE;
+            conditionalValue = first.getHeader(HttpHeaders.LAST_MODIFIED);
+        }
+        MockHttpServletResponse check = new MockHttpServletResponse();
+        MockHttpServletRequest conditional = request();
+        conditional.addHeader(conditionalHeader, conditionalValue);
+        serve(conditional, check);
+        if (check.getStatus() != 304) {
+            throw new IllegalStateException(handler + " 的条件请求没有返回 304: " + check.getStatus());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public long fullDownload() throws Exception {
+        CountingResponse response = new CountingResponse();
+        serve(request(), response);
+        return response.written;
+    }
+
+    @Benchmark
+    public int notModified() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(conditionalHeader, conditionalValue);
+        CountingResponse response = new CountingResponse();
+        serve(request, response);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public long range() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-65535");
+        CountingResponse response = new CountingResponse();
+        serve(request, response);
+        return response.written;
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", URI);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, PATH);
+        return request;
+    }
+
+    private void serve(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        if ("resource".equals(handler)) {
+            resourceHandler.handleRequest(request, response);
+        } else {
+            controller.serve(request, response);
+        }
+    }
+
+    /**
+     * MockHttpServletResponse 每次写入都会复制已缓冲的内容，开销会盖过被测代码；这里只计数不保存
+     */
+    private static class CountingResponse extends MockHttpServletResponse {
+        private long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(UploadServingBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package wtf.alexhan.thousandlines.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.repository.UserRepository;
+import wtf.alexhan.thousandlines.service.ComicArchiveService;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 离线批量导入：扫描目录下的全部 .cbz/.zip 归档，用有界线程池并行导入后退出
+ *
+ * 运行：java -jar thousand-lines.jar --spring.main.web-application-type=none
+ *      --app.import.dir=/data/cbz --app.import.owner=admin
+ *
+ * 导入成功的归档记录在目录下的 .imported 文件中，中断后重新运行会跳过这些归档
+ */
+@Component
+@ConditionalOnProperty(name = "app.import.dir")
+public class ComicImportRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(ComicImportRunner.class);
+
+    private static final String IMPORTED_LOG = ".imported";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ComicArchiveService comicArchiveService;
+    private final UserRepository userRepository;
+    private final ConfigurableApplicationContext context;
+    private final Path directory;
+    private final String owner;
+    private final int parallelism;
+
+    public ComicImportRunner(ComicArchiveService comicArchiveService, UserRepository userRepository,
+                             ConfigurableApplicationContext context,
+                             @Value("${app.import.dir}") String directory,
+                             @Value("${app.import.owner:admin}") String owner,
+                             @Value("${app.import.parallelism:2}") int parallelism) {
+        this.comicArchiveService = comicArchiveService;
+        this.userRepository = userRepository;
+        this.context = context;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.owner = owner;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        SessionUser uploader = userRepository.findByUsername(owner)
+                .map(SessionUser::from)
+                .orElseThrow(() -> new IllegalArgumentException("导入用户不存在: " + owner));
+        if (uploader.role() == UserRole.USER) {
+            throw new IllegalArgumentException("导入用户没有上传权限: " + owner);
+        }
+
+        Path importedLog = directory.resolve(IMPORTED_LOG);
+        Set<String> imported = new HashSet<>();
+        if (Files.exists(importedLog)) {
+            imported.addAll(Files.readAllLines(importedLog, StandardCharsets.UTF_8));
+        }
+        List<Path> archives;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            archives = paths.filter(Files::isRegularFile)
+                    .filter(ComicImportRunner::isArchive)
+                    .filter(path -> !imported.contains(directory.relativize(path).toString()))
+                    .sorted()
+                    .toList();
+        }
+        log.info("开始导入 {} 个归档（已导入 {} 个），并行数 {}", archives.size(), imported.size(), parallelism);
+
+        // 队列有界，满了由提交线程自己执行，同一时间最多处理 parallelism * 2 + 1 个归档
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism), Thread.ofPlatform().name("comic-import-", 1).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        for (Path archive : archives) {
+            executor.execute(() -> {
+                if (importOne(archive, uploader, importedLog)) {
+                    succeeded.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.info("导入进行中：成功 {}，失败 {}，共 {}", succeeded.get(), failed.get(), archives.size());
+        }
+
+        log.info("导入完成：成功 {}，失败 {}，耗时 {} 秒", succeeded.get(), failed.get(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        int exitCode = failed.get() == 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+
+    private boolean importOne(Path archive, SessionUser uploader, Path importedLog) {
+        String name = archive.getFileName().toString();
+        String title = name.substring(0, name.lastIndexOf('.'));
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE)) {
+            Comic comic = comicArchiveService.importArchive(in, title, uploader);
+            markImported(importedLog, directory.relativize(archive).toString());
+            log.info("已导入 {} -> 漫画 {}（{} 页）", name, comic.getId(), comic.getChapterCount());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("导入失败 {}: {}", archive, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void markImported(Path importedLog, String relativePath) throws IOException {
+        Files.writeString(importedLog, relativePath + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".cbz") || name.endsWith(".zip");
+    }
+}
@@ -0,0 +1,50 @@
+package wtf.alexhan.thousandlines.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.job.ComicManifestJobHandler;
+import wtf.alexhan.thousandlines.job.JobQueueService;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+
+import java.util.List;
+
+/**
+ * 存量漫画的页面清单补算：为还没有页面元数据的漫画各排一个清单任务后退出
+ *
+ * 运行：java -jar thousand-lines.jar --spring.main.web-application-type=none --app.comic-manifest.backfill=true
+ *
+ * 只负责排队，任务由运行中的服务执行；已有未完成清单任务的漫画会跳过，可以重复运行
+ */
+@Component
+@ConditionalOnProperty(name = "app.comic-manifest.backfill", havingValue = "true")
+public class ComicManifestBackfillRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(ComicManifestBackfillRunner.class);
+
+    private final ComicRepository comicRepository;
+    private final JobQueueService jobQueueService;
+    private final ConfigurableApplicationContext context;
+
+    public ComicManifestBackfillRunner(ComicRepository comicRepository, JobQueueService jobQueueService,
+                                       ConfigurableApplicationContext context) {
+        this.comicRepository = comicRepository;
+        this.jobQueueService = jobQueueService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Long> comicIds = comicRepository.findIdsWithoutPageMetadata();
+        log.info("开始补算页面清单，共 {} 部漫画", comicIds.size());
+        for (Long comicId : comicIds) {
+            jobQueueService.enqueueIfAbsent(ComicManifestJobHandler.TYPE, comicId);
+        }
+        log.info("页面清单任务已排队：{} 部漫画", comicIds.size());
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,101 @@
+package wtf.alexhan.thousandlines.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.service.StorageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 存量漫画打包迁移：把 uploads/comics 下的每个漫画目录打包为 {目录名}.pack 后退出
+ *
+ * 运行：java -jar thousand-lines.jar --spring.main.web-application-type=none --app.comic-pack.migrate=true
+ *
+ * 打包前补齐页面的衍生图；已打包的漫画会跳过，中断后重新运行会继续处理剩下的目录。
+ * 可以在服务运行时执行：打包文件就位后才删除原目录，期间的请求由原目录或打包文件响应
+ */
+@Component
+@ConditionalOnProperty(name = "app.comic-pack.migrate", havingValue = "true")
+public class ComicPackRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(ComicPackRunner.class);
+
+    private final StorageService storageService;
+    private final ConfigurableApplicationContext context;
+    private final Path comicsRoot;
+    private final int parallelism;
+
+    public ComicPackRunner(StorageService storageService, ConfigurableApplicationContext context,
+                           @Value("${app.upload-dir}") String uploadDir,
+                           @Value("${app.comic-pack.parallelism:2}") int parallelism) {
+        this.storageService = storageService;
+        this.context = context;
+        this.comicsRoot = Paths.get(uploadDir, "comics");
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> folders;
+        if (Files.isDirectory(comicsRoot)) {
+            try (Stream<Path> paths = Files.list(comicsRoot)) {
+                folders = paths.filter(Files::isDirectory)
+                        .map(path -> path.getFileName().toString())
+                        // 跳过上传中的临时目录
+                        .filter(name -> !name.startsWith("."))
+                        .sorted()
+                        .toList();
+            }
+        } else {
+            folders = List.of();
+        }
+        log.info("开始打包 {} 个漫画目录，并行数 {}", folders.size(), parallelism);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism), Thread.ofPlatform().name("comic-pack-", 1).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger packed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        for (String folder : folders) {
+            executor.execute(() -> {
+                try {
+                    storageService.generateDerivatives(null, folder);
+                    if (storageService.packComicFolder(folder)) {
+                        packed.incrementAndGet();
+                    } else {
+                        skipped.incrementAndGet();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.warn("打包失败 {}: {}", folder, e.getMessage());
+                }
+            });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.info("打包进行中：完成 {}，跳过 {}，失败 {}，共 {}", packed.get(), skipped.get(), failed.get(), folders.size());
+        }
+
+        log.info("打包完成：完成 {}，跳过 {}，失败 {}，耗时 {} 秒", packed.get(), skipped.get(), failed.get(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        int exitCode = failed.get() == 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
@@ -0,0 +1,16 @@
+package wtf.alexhan.thousandlines.config;
+
+/**
+ * 缓存名称，需要与 application.properties 中的 spring.cache.cache-names 保持一致
+ */
+public final class CacheNames {
+    // 列表前几页（全部 / 热门 / 最新）
+    public static final String COMIC_PAGES = "comicPages";
+    // 全部标签名
+    public static final String ALL_TAGS = "allTags";
+    // 阅读器页面清单，按漫画 ID
+    public static final String COMIC_MANIFESTS = "comicManifests";
+
+    private CacheNames() {
+    }
+}
@@ -0,0 +1,46 @@
+package wtf.alexhan.thousandlines.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 漫画页写盘线程池：并发数有上限，避免大批量上传占满磁盘IO
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pageWriteExecutor(@Value("${app.upload.parallelism:4}") int parallelism) {
+        return Executors.newFixedThreadPool(parallelism, namedThreadFactory("page-writer-"));
+    }
+
+    /**
+     * 密码哈希线程池：BCrypt 很耗 CPU，与 Tomcat 工作线程隔开；队列满时直接拒绝（返回 503），不再排队
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordHashExecutor(@Value("${app.password.hash-threads:0}") int threads,
+                                                   @Value("${app.password.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
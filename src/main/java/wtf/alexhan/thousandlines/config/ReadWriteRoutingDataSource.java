@@ -0,0 +1,47 @@
+package wtf.alexhan.thousandlines.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 按当前事务是否只读选择数据源：只读事务走从库，其余（写事务、无事务的 JDBC 调用）走主库
+ *
+ * 只读标记在事务开始后才设置，必须包在 LazyConnectionDataSourceProxy 里使用，
+ * 让真正获取连接的时机推迟到第一条语句执行时
+ *
+ * 刚写入过的客户端（见 ReadYourWritesFilter）在当前线程上强制走主库，避免读到从库延迟前的旧数据
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    /**
+     * 当前线程的只读事务是否也走主库；用完必须设回 false
+     */
+    public static void forcePrimary(boolean force) {
+        if (force) {
+            FORCE_PRIMARY.set(Boolean.TRUE);
+        } else {
+            FORCE_PRIMARY.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+
+    /**
+     * 当前线程的语句会被路由到哪个数据源
+     */
+    public static Route currentRoute() {
+        if (FORCE_PRIMARY.get() != null) {
+            return Route.PRIMARY;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,66 @@
+package wtf.alexhan.thousandlines.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import wtf.alexhan.thousandlines.session.FileSessionStore;
+import wtf.alexhan.thousandlines.session.SessionStore;
+import wtf.alexhan.thousandlines.session.StoreSessionRepository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * 会话外置：HttpSession 由 Spring Session 接管，数据编码后保存在 SessionStore 中
+ * 默认使用本地文件存储（app.session.store=file）；多实例部署时提供一个共享存储的 SessionStore Bean 即可
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+    private static final Logger log = LoggerFactory.getLogger(SessionConfig.class);
+
+    @Bean
+    @ConditionalOnMissingBean(SessionStore.class)
+    @ConditionalOnProperty(name = "app.session.store", havingValue = "file", matchIfMissing = true)
+    public SessionStore fileSessionStore(@Value("${app.session.dir:sessions}") String directory) throws IOException {
+        return new FileSessionStore(Paths.get(directory));
+    }
+
+    @Bean
+    public StoreSessionRepository sessionRepository(SessionStore sessionStore,
+                                                    @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+                                                    @Value("${app.session.touch-divisor:10}") int touchDivisor) {
+        return new StoreSessionRepository(sessionStore, timeout, touchDivisor);
+    }
+
+    @Bean
+    public ExpiredSessionCleaner expiredSessionCleaner(StoreSessionRepository sessionRepository) {
+        return new ExpiredSessionCleaner(sessionRepository);
+    }
+
+    /**
+     * 定时清理过期会话
+     */
+    public static class ExpiredSessionCleaner {
+        private final StoreSessionRepository sessionRepository;
+
+        ExpiredSessionCleaner(StoreSessionRepository sessionRepository) {
+            this.sessionRepository = sessionRepository;
+        }
+
+        @Scheduled(fixedDelayString = "${app.session.cleanup-interval-ms:600000}")
+        public void purge() {
+            int purged = sessionRepository.purgeExpired();
+            if (purged > 0) {
+                log.info("已清理 {} 个过期会话", purged);
+            }
+        }
+    }
+}
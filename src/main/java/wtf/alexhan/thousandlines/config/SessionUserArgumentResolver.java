@@ -0,0 +1,35 @@
+package wtf.alexhan.thousandlines.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+
+/**
+ * 把 session 中的登录用户注入到 SessionUser 类型的控制器参数，未登录时为 null；不会为此创建 session
+ */
+@Component
+public class SessionUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return SessionUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpSession session = request == null ? null : request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        Object user = session.getAttribute(SessionUser.SESSION_ATTRIBUTE);
+        return user instanceof SessionUser sessionUser ? sessionUser : null;
+    }
+}
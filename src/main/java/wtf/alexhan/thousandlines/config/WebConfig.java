@@ -1,29 +1,30 @@
 package wtf.alexhan.thousandlines.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import wtf.alexhan.thousandlines.interceptor.MaintenanceInterceptor;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-    @Value("${app.upload-dir}")
-    private String uploadDir;
-    
     @Autowired
     private MaintenanceInterceptor maintenanceInterceptor;
 
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
+    @Autowired
+    private SessionUserArgumentResolver sessionUserArgumentResolver;
 
+    // /uploads/** 由 UploadResourceController 处理（缓存协商、Range、零拷贝输出）
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(sessionUserArgumentResolver);
     }
-    
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(maintenanceInterceptor)
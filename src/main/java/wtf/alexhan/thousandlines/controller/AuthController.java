@@ -1,5 +1,6 @@
 package wtf.alexhan.thousandlines.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,10 +10,14 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import wtf.alexhan.thousandlines.dto.LoginRequest;
 import wtf.alexhan.thousandlines.dto.RegRequest;
+import wtf.alexhan.thousandlines.dto.SessionUser;
 import wtf.alexhan.thousandlines.model.User;
+import wtf.alexhan.thousandlines.service.PasswordHashingOverloadedException;
+import wtf.alexhan.thousandlines.service.PasswordHashingService;
 import wtf.alexhan.thousandlines.service.UserService;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequestMapping("/auth")
@@ -28,25 +33,41 @@ public class AuthController {
         return "login";
     }
 
+    /**
+     * 登录：密码校验在哈希线程池中异步完成，请求线程立即释放；线程池满时返回 503
+     */
     @PostMapping("/login")
-    public String login(@ModelAttribute LoginRequest request,
-                        HttpSession session,
-                        Model model) {
-        try {
-            User user = userService.findByUsername(request.getUsername())
-                    .orElseThrow(() -> new RuntimeException("用户不存在"));
+    public CompletableFuture<String> login(@ModelAttribute LoginRequest request,
+                                           HttpSession session,
+                                           HttpServletResponse response,
+                                           Model model) {
+        Optional<User> found = userService.findByUsername(request.getUsername());
+        if (found.isEmpty()) {
+            model.addAttribute("error", "用户不存在");
+            return CompletableFuture.completedFuture("login");
+        }
+        User user = found.get();
 
-            if (!userService.validatePassword(request.getPassword(), user.getPassword())) {
-                System.out.println(request.getPassword() + ": WTF Brooo ：" + user.getPassword());
-                throw new RuntimeException("密码错误");
-            }
+        return userService.validatePasswordAsync(request.getPassword(), user.getPassword())
+                .handle((matched, failure) -> {
+                    if (failure != null) {
+                        RuntimeException cause = PasswordHashingService.unwrap(failure);
+                        if (cause instanceof PasswordHashingOverloadedException) {
+                            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                        }
+                        model.addAttribute("error", cause.getMessage());
+                        return "login";
+                    }
+                    if (!matched) {
+                        model.addAttribute("error", "密码错误");
+                        return "login";
+                    }
 
-            session.setAttribute("user", user);
-            return "redirect:/";
-        } catch (RuntimeException e) {
-            model.addAttribute("error", e.getMessage());
-            return "login";
-        }
+                    userService.upgradePasswordHashIfNeeded(user, request.getPassword());
+                    // 在哈希线程中写入：请求线程可能正在保存会话，StoreSession 按版本号保证这次修改在异步分派结束时写出
+                    session.setAttribute(SessionUser.SESSION_ATTRIBUTE, SessionUser.from(user));
+                    return "redirect:/";
+                });
     }
 
     @GetMapping("/logout")
@@ -64,6 +85,7 @@ public class AuthController {
     public String register(@ModelAttribute RegRequest regRequest, 
                           @RequestParam(required = false) boolean agreeTerms,
                           BindingResult bindingResult, 
+                          HttpServletResponse response,
                           Model model) {
         if (bindingResult.hasErrors()) {
             model.addAttribute("error", "表单验证失败，请检查输入");
@@ -80,6 +102,10 @@ public class AuthController {
             userService.registerUser(regRequest);
             model.addAttribute("success", "注册成功，请登录");
             return "login";
+        } catch (PasswordHashingOverloadedException e) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            model.addAttribute("error", e.getMessage());
+            return "register";
         } catch (Exception e) {
             model.addAttribute("error", e.getMessage());
             return "register";
@@ -0,0 +1,171 @@
+package wtf.alexhan.thousandlines.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import wtf.alexhan.thousandlines.dto.ChunkedUploadStatus;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.service.ChunkedUploadService;
+import wtf.alexhan.thousandlines.service.UploadOffsetConflictException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 可续传的分块上传接口：
+ * POST   /comics/uploads                        创建会话（元数据 + 封面和每页的文件名、大小），返回各文件序号
+ * GET    /comics/uploads/{id}                   查询每个文件已接收的字节数
+ * HEAD   /comics/uploads/{id}/files/{index}     单个文件的 Upload-Offset / Upload-Length
+ * PATCH  /comics/uploads/{id}/files/{index}     按 Upload-Offset 追加一块，返回新的 Upload-Offset；偏移量不一致返回 409
+ * POST   /comics/uploads/{id}/complete          全部接收后创建漫画
+ * DELETE /comics/uploads/{id}                   放弃上传
+ */
+@Controller
+@RequestMapping("/comics/uploads")
+public class ChunkedUploadController {
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<?> create(@RequestParam("title") String title,
+                                    @RequestParam(value = "author", required = false) String author,
+                                    @RequestParam(value = "description", required = false) String description,
+                                    @RequestParam(value = "tags", required = false) String tags,
+                                    @RequestParam("coverName") String coverName,
+                                    @RequestParam("coverSize") long coverSize,
+                                    @RequestParam("pageNames") List<String> pageNames,
+                                    @RequestParam("pageSizes") List<Long> pageSizes,
+                                    SessionUser user) throws IOException {
+        if (user == null || user.role() == UserRole.USER) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        UploadComicRequest metadata = new UploadComicRequest();
+        metadata.setTitle(title);
+        metadata.setAuthor(author);
+        metadata.setDescription(description);
+        if (tags != null && !tags.trim().isEmpty()) {
+            metadata.setTags(Arrays.asList(tags.split(",")));
+        }
+        try {
+            ChunkedUploadStatus status = chunkedUploadService.create(user, metadata, coverName, coverSize, pageNames, pageSizes);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, "/comics/uploads/" + status.id())
+                    .body(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<ChunkedUploadStatus> status(@PathVariable String id, SessionUser user) throws IOException {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(chunkedUploadService.getStatus(id, user));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @RequestMapping(value = "/{id}/files/{index}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> offset(@PathVariable String id, @PathVariable int index, SessionUser user) throws IOException {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            ChunkedUploadStatus.FileStatus file = fileStatus(chunkedUploadService.getStatus(id, user), index);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(file.offset()))
+                    .header(UPLOAD_LENGTH, String.valueOf(file.length()))
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PatchMapping("/{id}/files/{index}")
+    public ResponseEntity<?> append(@PathVariable String id, @PathVariable int index,
+                                    @RequestHeader(UPLOAD_OFFSET) long offset,
+                                    HttpServletRequest request,
+                                    SessionUser user) throws IOException {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            long newOffset = chunkedUploadService.append(id, user, index, offset, request.getInputStream());
+            return ResponseEntity.noContent().header(UPLOAD_OFFSET, String.valueOf(newOffset)).build();
+        } catch (UploadOffsetConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getCurrentOffset()))
+                    .build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/complete")
+    @ResponseBody
+    public ResponseEntity<?> complete(@PathVariable String id, SessionUser user) throws IOException {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            Comic comic = chunkedUploadService.complete(id, user);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, "/comics/" + comic.getId())
+                    .body(Map.of("id", comic.getId(), "pages", comic.getChapterCount()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> abort(@PathVariable String id, SessionUser user) throws IOException {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            chunkedUploadService.abort(id, user);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static ChunkedUploadStatus.FileStatus fileStatus(ChunkedUploadStatus status, int index) {
+        if (index < 0 || index >= status.files().size()) {
+            throw new NoSuchElementException("文件序号不存在: " + index);
+        }
+        return status.files().get(index);
+    }
+}
@@ -1,51 +1,77 @@
 package wtf.alexhan.thousandlines.controller;
 
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import wtf.alexhan.thousandlines.dto.ComicCard;
+import wtf.alexhan.thousandlines.dto.ComicFeed;
+import wtf.alexhan.thousandlines.dto.PageManifest;
+import wtf.alexhan.thousandlines.dto.SessionUser;
 import wtf.alexhan.thousandlines.dto.UploadComicRequest;
 import wtf.alexhan.thousandlines.model.Comic;
-import wtf.alexhan.thousandlines.model.User;
 import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.service.ComicArchiveService;
+import wtf.alexhan.thousandlines.service.ComicManifestService;
 import wtf.alexhan.thousandlines.service.ComicService;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Controller
 @RequestMapping("/comics")
 public class ComicController {
     private final ComicService comicService;
+    private final ComicArchiveService comicArchiveService;
+    private final ComicManifestService comicManifestService;
+    private final ReaderPreloadHints readerPreloadHints;
 
-    public ComicController(ComicService comicService) {
+    public ComicController(ComicService comicService, ComicArchiveService comicArchiveService,
+                           ComicManifestService comicManifestService, ReaderPreloadHints readerPreloadHints) {
         this.comicService = comicService;
+        this.comicArchiveService = comicArchiveService;
+        this.comicManifestService = comicManifestService;
+        this.readerPreloadHints = readerPreloadHints;
     }
 
+    // 热门/最新列表只保留前几页的页码跳转，更深的内容通过游标继续加载
+    private static final int MAX_OFFSET_PAGES = 5;
+    private static final int MAX_FEED_SIZE = 48;
+    // 阅读页展示的相关漫画数量
+    private static final int RELATED_COMICS = 4;
+
     @GetMapping
     public String listComics(@RequestParam(value = "sort", required = false) String sort,
                              @RequestParam(value = "page", defaultValue = "0") int page,
                              @RequestParam(value = "size", defaultValue = "12") int size,
                              Model model) {
         Pageable pageable;
-        Page<Comic> comicPage;
-
-        if ("popular".equals(sort)) {
-            pageable = PageRequest.of(page, size, Sort.by("viewCount").descending());
-            comicPage = comicService.getPopularComics(pageable);
-            model.addAttribute("sort", "popular");
-        } else if ("latest".equals(sort)) {
-            pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-            comicPage = comicService.getLatestComics(pageable);
-            model.addAttribute("sort", "latest");
+        Page<ComicCard> comicPage;
+
+        if (ComicService.SORT_POPULAR.equals(sort) || ComicService.SORT_LATEST.equals(sort)) {
+            page = Math.min(Math.max(page, 0), MAX_OFFSET_PAGES - 1);
+            pageable = PageRequest.of(page, size);
+            comicPage = ComicService.SORT_POPULAR.equals(sort)
+                    ? comicService.getPopularComics(pageable)
+                    : comicService.getLatestComics(pageable);
+            model.addAttribute("sort", sort);
+            model.addAttribute("maxOffsetPages", MAX_OFFSET_PAGES);
+            if (comicPage.hasNext() && comicPage.hasContent()) {
+                List<ComicCard> content = comicPage.getContent();
+                model.addAttribute("feedCursor", comicService.cursorAfter(sort, content.get(content.size() - 1)));
+            }
         } else {
             pageable = PageRequest.of(page, size);
             comicPage = comicService.getAllComics(pageable);
@@ -56,13 +82,34 @@ public class ComicController {
 
         model.addAttribute("comics", comicPage.getContent());
         model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", comicPage.getTotalPages());
+        model.addAttribute("totalPages", model.containsAttribute("maxOffsetPages")
+                ? Math.min(comicPage.getTotalPages(), MAX_OFFSET_PAGES)
+                : comicPage.getTotalPages());
         model.addAttribute("totalItems", comicPage.getTotalElements());
         model.addAttribute("allTags", allTags);
 
         return "index";
     }
 
+    /**
+     * 无限滚动接口：按游标返回热门或最新漫画的下一段
+     */
+    @GetMapping("/feed")
+    @ResponseBody
+    public ResponseEntity<ComicFeed> feed(@RequestParam(value = "sort", defaultValue = "latest") String sort,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "size", defaultValue = "12") int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_FEED_SIZE);
+        try {
+            ComicFeed feed = ComicService.SORT_POPULAR.equals(sort)
+                    ? comicService.getPopularFeed(cursor, limit)
+                    : comicService.getLatestFeed(cursor, limit);
+            return ResponseEntity.ok(feed);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/search")
     public String searchComics(@RequestParam(value = "keyword", required = false) String keyword,
                                @RequestParam(value = "title", required = false) String title,
@@ -75,11 +122,18 @@ public class ComicController {
         boolean isSearch = keyword != null || title != null || author != null || tag != null;
 
         if (isSearch) {
-            // 高级搜索（不分页）
-            List<Comic> comics = comicService.advancedSearch(title, author, tag);
+            Page<ComicCard> comicPage;
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                // 关键词搜索（倒排索引，分页）
+                comicPage = comicService.searchComics(keyword, PageRequest.of(page, size));
+            } else {
+                // 高级搜索（数据库组合条件，分页）
+                Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
+                comicPage = comicService.advancedSearch(title, author, tag, pageable);
+            }
 
             // 检查是否有搜索结果
-            if (comics.isEmpty()) {
+            if (comicPage.getTotalElements() == 0) {
                 model.addAttribute("searchNoResult", true);
                 model.addAttribute("keyword", keyword);
                 model.addAttribute("title", title);
@@ -93,17 +147,18 @@ public class ComicController {
                 return "index";
             }
 
+            model.addAttribute("keyword", keyword);
             model.addAttribute("title", title);
             model.addAttribute("author", author);
             model.addAttribute("tag", tag);
-            model.addAttribute("comics", comics);
-            model.addAttribute("currentPage", 0);
-            model.addAttribute("totalPages", 1);
-            model.addAttribute("totalItems", comics.size());
+            model.addAttribute("comics", comicPage.getContent());
+            model.addAttribute("currentPage", comicPage.getNumber());
+            model.addAttribute("totalPages", comicPage.getTotalPages());
+            model.addAttribute("totalItems", comicPage.getTotalElements());
         } else {
             // 没有搜索条件，显示所有漫画（分页）
             Pageable pageable = PageRequest.of(page, size);
-            Page<Comic> comicPage = comicService.getAllComics(pageable);
+            Page<ComicCard> comicPage = comicService.getAllComics(pageable);
             model.addAttribute("comics", comicPage.getContent());
             model.addAttribute("currentPage", page);
             model.addAttribute("totalPages", comicPage.getTotalPages());
@@ -118,15 +173,6 @@ public class ComicController {
         return "index";
     }
 
-    // 添加分页搜索方法到 ComicService
-    // 在 ComicService.java 中添加：
-    /*
-    public Page<Comic> searchComics(String keyword, Pageable pageable) {
-        // 需要先在 ComicRepository 中添加分页搜索方法
-        return comicRepository.searchComics(keyword, pageable);
-    }
-    */
-
     @GetMapping("/advanced-search")
     public String showAdvancedSearch(Model model) {
         List<String> allTags = comicService.getAllTags();
@@ -135,20 +181,24 @@ public class ComicController {
     }
 
     @GetMapping("/{id}")
-    public String viewComic(@PathVariable Long id, Model model, HttpSession session) {
+    public String viewComic(@PathVariable Long id,
+                            @RequestParam(value = "page", defaultValue = "1") int page,
+                            Model model, SessionUser user, HttpServletResponse response) throws IOException {
+        // 清单有缓存，先发出预加载提示，浏览器在服务端渲染页面时就开始下载图片；
+        // 清单由入库时的后台任务计算，还没算好时这次不发提示
+        PageManifest manifest = comicManifestService.findManifest(id);
+        if (manifest != null) {
+            readerPreloadHints.apply(response, manifest, page);
+        }
+
         Comic comic = comicService.getComicById(id);
-        comicService.incrementViewCount(id);
+        comicService.incrementViewCount(comic);
 
-        User user = (User) session.getAttribute("user");
-        boolean canDelete = user != null &&
-                (user.getId().equals(comic.getUser().getId()) ||
-                        user.getRole() == UserRole.ADMIN);
-        boolean canEdit = user != null &&
-                (user.getId().equals(comic.getUser().getId()) ||
-                        user.getRole() == UserRole.ADMIN);
+        boolean canDelete = user != null && user.canManage(comic.getUser().getId());
+        boolean canEdit = user != null && user.canManage(comic.getUser().getId());
 
         // 获取相关漫画（同作者或同标签）
-        List<Comic> relatedComics = getRelatedComics(comic);
+        List<ComicCard> relatedComics = comicService.getRelatedComics(comic.getId(), RELATED_COMICS);
 
         model.addAttribute("comic", comic);
         model.addAttribute("canDelete", canDelete);
@@ -157,19 +207,9 @@ public class ComicController {
         return "viewer";
     }
 
-    private List<Comic> getRelatedComics(Comic comic) {
-        // 简单的相关推荐逻辑
-        // 可以改为从数据库查询同作者或同标签的漫画
-        return comicService.searchByAuthor(comic.getAuthor()).stream()
-                .filter(c -> !c.getId().equals(comic.getId()))
-                .limit(4)
-                .toList();
-    }
-
     @GetMapping("/upload")
-    public String showUploadForm(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
-        if (user == null || user.getRole() == UserRole.USER) {
+    public String showUploadForm(SessionUser user, Model model) {
+        if (user == null || user.role() == UserRole.USER) {
             return "redirect:/auth/login";
         }
         return "upload";
@@ -182,11 +222,10 @@ public class ComicController {
                               @RequestParam(value = "tags", required = false) String tags,
                               @RequestParam("coverImage") MultipartFile coverImage,
                               @RequestParam("pages") MultipartFile[] pages,
-                              HttpSession session,
+                              SessionUser user,
                               Model model) {
         try {
-            User user = (User) session.getAttribute("user");
-            if (user == null || user.getRole() == UserRole.USER) {
+            if (user == null || user.role() == UserRole.USER) {
                 return "redirect:/auth/login";
             }
 
@@ -216,10 +255,34 @@ public class ComicController {
         }
     }
 
+    /**
+     * 从 ZIP/CBZ 归档导入一部漫画：请求体就是归档本身（不是 multipart），边读边写入存储，
+     * 不经过 multipart 临时文件，也不受上传大小限制；例如
+     * curl --data-binary @chapter.cbz -H "Content-Type: application/zip" "/comics/import?name=chapter"
+     */
+    @PostMapping(value = "/import", consumes = {"application/zip", "application/x-cbz",
+            "application/vnd.comicbook+zip", "application/octet-stream"})
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importArchive(@RequestParam(value = "name", required = false) String name,
+                                                             HttpServletRequest request,
+                                                             SessionUser user) {
+        if (user == null || user.role() == UserRole.USER) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            Comic comic = comicArchiveService.importArchive(request.getInputStream(), name, user);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(Map.of("id", comic.getId(), "title", comic.getTitle(), "pages", comic.getChapterCount()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "归档读取失败: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/{id}/delete")
-    public String deleteComic(@PathVariable Long id, HttpSession session) {
+    public String deleteComic(@PathVariable Long id, SessionUser user) {
         try {
-            User user = (User) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/auth/login";
             }
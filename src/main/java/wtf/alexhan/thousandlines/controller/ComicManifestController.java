@@ -0,0 +1,41 @@
+package wtf.alexhan.thousandlines.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import wtf.alexhan.thousandlines.dto.PageManifest;
+import wtf.alexhan.thousandlines.service.ComicManifestService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阅读器页面清单：GET /api/comics/{id}/manifest
+ * 带 ETag，清单不变时返回 304
+ */
+@Controller
+@RequestMapping("/api/comics")
+public class ComicManifestController {
+    private final ComicManifestService comicManifestService;
+
+    public ComicManifestController(ComicManifestService comicManifestService) {
+        this.comicManifestService = comicManifestService;
+    }
+
+    @GetMapping("/{id}/manifest")
+    @ResponseBody
+    public ResponseEntity<PageManifest> manifest(@PathVariable Long id) throws IOException {
+        PageManifest manifest = comicManifestService.getManifest(id);
+        if (manifest == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .eTag(manifest.version())
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic())
+                .body(manifest);
+    }
+}
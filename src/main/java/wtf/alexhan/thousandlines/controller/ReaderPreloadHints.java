@@ -0,0 +1,108 @@
+package wtf.alexhan.thousandlines.controller;
+
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.dto.PageManifest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 阅读页的预加载提示：为页面清单和当前页起的几页加 Link: rel=preload 响应头，
+ * 并在渲染页面之前先发出 103 Early Hints，浏览器在等待 HTML 时就开始下载图片
+ *
+ * 图片的 imagesrcset / imagesizes 与 viewer.js 中设置的完全一致，预加载的响应才能被复用
+ */
+@Component
+public class ReaderPreloadHints {
+    private static final Logger log = LoggerFactory.getLogger(ReaderPreloadHints.class);
+
+    // 与 viewer.js 中 img.sizes 保持一致
+    public static final String PAGE_SIZES = "(max-width: 800px) 100vw, 960px";
+
+    // Tomcat 的 sendEarlyHints()，不是 Servlet 标准接口，按响应类型查找一次
+    private static final ClassValue<Method> EARLY_HINTS = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                return type.getMethod("sendEarlyHints");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    private final int preloadPages;
+    private final boolean earlyHints;
+
+    public ReaderPreloadHints(@Value("${app.reader.preload-pages:3}") int preloadPages,
+                              @Value("${app.reader.early-hints:true}") boolean earlyHints) {
+        this.preloadPages = Math.max(0, preloadPages);
+        this.earlyHints = earlyHints;
+    }
+
+    /**
+     * 在写入响应内容之前调用
+     *
+     * @param page 从 1 开始的当前页
+     */
+    public void apply(HttpServletResponse response, PageManifest manifest, int page) {
+        response.addHeader(HttpHeaders.LINK,
+                "</api/comics/" + manifest.comicId() + "/manifest>; rel=preload; as=fetch; crossorigin");
+
+        List<PageManifest.Page> pages = manifest.pages();
+        int from = Math.max(0, Math.min(page, pages.size()) - 1);
+        int to = Math.min(pages.size(), from + 1 + preloadPages);
+        for (PageManifest.Page p : pages.subList(from, to)) {
+            String srcset = srcset(p);
+            response.addHeader(HttpHeaders.LINK, srcset.isEmpty()
+                    ? "<" + p.url() + ">; rel=preload; as=image"
+                    : "<" + p.url() + ">; rel=preload; as=image; imagesrcset=\"" + srcset + "\"; imagesizes=\"" + PAGE_SIZES + "\"");
+        }
+
+        if (earlyHints) {
+            sendEarlyHints(response);
+        }
+    }
+
+    /**
+     * 衍生图加原图，按宽度升序
+     */
+    static String srcset(PageManifest.Page page) {
+        StringJoiner srcset = new StringJoiner(", ");
+        for (PageManifest.Variant variant : page.variants()) {
+            srcset.add(variant.url() + " " + variant.width() + "w");
+        }
+        if (page.width() > 0) {
+            srcset.add(page.url() + " " + page.width() + "w");
+        }
+        return srcset.toString();
+    }
+
+    /**
+     * 用已设置的 Link 头发出 103；容器不支持时跳过，Link 头仍随最终响应发送
+     */
+    private void sendEarlyHints(HttpServletResponse response) {
+        ServletResponse target = response;
+        while (target instanceof ServletResponseWrapper wrapper) {
+            target = wrapper.getResponse();
+        }
+        Method method = EARLY_HINTS.get(target.getClass());
+        if (method == null) {
+            return;
+        }
+        try {
+            method.invoke(target);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            log.debug("发送 103 Early Hints 失败", e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package wtf.alexhan.thousandlines.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.UriUtils;
+import wtf.alexhan.thousandlines.service.ComicPack;
+import wtf.alexhan.thousandlines.service.ComicPackStore;
+import wtf.alexhan.thousandlines.service.ImageDerivativeService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * /uploads/** 的文件服务：零拷贝输出、ETag/Last-Modified 协商缓存、Range 请求，
+ * 内容寻址和漫画页面路径带长期 immutable 缓存头
+ * 已打包的漫画（见 ComicPack）从内存映射的打包文件中按切片输出，URL 不变
+ */
+@Controller
+public class UploadResourceController {
+
+    private static final String URL_PREFIX = "/uploads/";
+    private static final String BLOB_TEMP_PREFIX = "blobs/tmp/";
+    private static final Pattern VARIANT = Pattern.compile("(.+)@(\\d{2,5})\\.jpg");
+    private static final List<String> ORIGINAL_EXTENSIONS = List.of(".jpg", ".jpeg", ".JPG", ".JPEG");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+    private static final Pattern COMIC_FILE = Pattern.compile("comics/([^/]+)/([^/]+)");
+
+    // 内容不会变化的路径：内容寻址文件和以 UUID 命名的漫画目录
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_CACHE_CONTROL = "public, max-age=3600";
+
+    // Tomcat NIO 连接器的 sendfile 支持
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final List<Path> roots = new ArrayList<>();
+    private final ImageDerivativeService imageDerivativeService;
+    private final ComicPackStore comicPackStore;
+
+    /**
+     * 要输出的内容：磁盘上的单个文件，或打包文件中映射区域的切片（content 不为 null）
+     */
+    private record Target(String name, Path file, ByteBuffer content, long length, long lastModified, String etag) {
+    }
+
+    public UploadResourceController(@Value("${app.upload-dir}") String uploadDir,
+                                    ImageDerivativeService imageDerivativeService,
+                                    ComicPackStore comicPackStore) {
+        // 先找上传目录，再兼容旧版本直接放在 uploads/ 下的文件（如默认头像）
+        Path uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path legacyRoot = Paths.get("uploads").toAbsolutePath().normalize();
+        roots.add(uploadRoot);
+        if (!legacyRoot.equals(uploadRoot)) {
+            roots.add(legacyRoot);
+        }
+        this.imageDerivativeService = imageDerivativeService;
+        this.comicPackStore = comicPackStore;
+    }
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relativePath = relativePath(request);
+        Target target = relativePath == null ? null : locate(relativePath);
+        if (target == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = target.length();
+        long lastModified = target.lastModified();
+        String etag = target.etag();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, isImmutable(relativePath) ? IMMUTABLE_CACHE_CONTROL : DEFAULT_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        MediaType mediaType = MediaTypeFactory.getMediaType(target.name())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(mediaType.toString());
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request, etag, lastModified)) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            // 只支持单个区间，多区间请求返回完整内容
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    long suffix = Long.parseLong(matcher.group(2));
+                    start = Math.max(0, length - suffix);
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (target.content() != null) {
+            // 打包文件的映射区域，不需要打开文件
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel channel = Channels.newChannel(out);
+            ByteBuffer content = target.content().slice((int) start, (int) count);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            out.flush();
+            return;
+        }
+
+        Path file = target.file();
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 交给 Tomcat 用 sendfile 直接从页缓存发送
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel sink = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, sink);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        out.flush();
+    }
+
+    private String relativePath(HttpServletRequest request) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        if (!uri.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        String path = UriUtils.decode(uri.substring(URL_PREFIX.length()), StandardCharsets.UTF_8);
+        // 路径注入防护
+        if (path.isEmpty() || path.contains("\\") || path.contains("\0")) {
+            return null;
+        }
+        // 以 . 开头的都是内部文件（.. 和 .、.blobs 清单、.staging-* 目录、.variant-*.tmp），
+        // 连同写入中的内容临时文件一起不对外提供，也就不会带着长期缓存头被缓存；
+        // 空的路径段会被文件系统合并，同样拒绝，避免 blobs//tmp/ 绕过前缀检查
+        if (path.startsWith(BLOB_TEMP_PREFIX)) {
+            return null;
+        }
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty() || segment.startsWith(".")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 在各个根目录和漫画打包文件中查找文件；衍生尺寸图缺失时根据原图按需生成
+     * 顺序：已打开的打包文件（不访问磁盘）→ 单独的文件 → 磁盘上的打包文件
+     */
+    private Target locate(String relativePath) throws IOException {
+        Matcher comicFile = COMIC_FILE.matcher(relativePath);
+        String folder = comicFile.matches() ? comicFile.group(1) : null;
+        String name = folder != null ? comicFile.group(2) : null;
+        if (folder != null) {
+            Target packed = fromPack(comicPackStore.cached(folder), name);
+            if (packed != null) {
+                return packed;
+            }
+        }
+
+        Path file = locateOriginal(relativePath);
+        if (file != null) {
+            return fromFile(relativePath, file);
+        }
+
+        ComicPack pack = folder != null ? comicPackStore.open(folder) : null;
+        Target packed = fromPack(pack, name);
+        if (packed != null) {
+            return packed;
+        }
+
+        Matcher matcher = VARIANT.matcher(relativePath);
+        if (!matcher.matches() || !imageDerivativeService.isSupportedWidth(Integer.parseInt(matcher.group(2)))) {
+            return null;
+        }
+        int width = Integer.parseInt(matcher.group(2));
+        if (pack != null) {
+            // 打包后新增的尺寸生成到漫画目录下，和打包文件一起删除
+            String originalName = name.substring(0, name.lastIndexOf('@')) + ".jpg";
+            try (InputStream original = pack.openStream(originalName)) {
+                if (original == null) {
+                    return null;
+                }
+                Path variant = imageDerivativeService.resolveVariant(original, roots.get(0).resolve(relativePath), width);
+                return variant != null ? fromFile(relativePath, variant) : fromPack(pack, originalName);
+            }
+        }
+        for (String extension : ORIGINAL_EXTENSIONS) {
+            Path original = locateOriginal(matcher.group(1) + extension);
+            if (original != null) {
+                return fromFile(relativePath, imageDerivativeService.resolveVariant(original, width));
+            }
+        }
+        return null;
+    }
+
+    private Target fromFile(String relativePath, Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Target(file.getFileName().toString(), file, null, attributes.size(),
+                attributes.lastModifiedTime().toMillis(), etag(relativePath, file, attributes));
+    }
+
+    private Target fromPack(ComicPack pack, String name) throws IOException {
+        if (pack == null) {
+            return null;
+        }
+        ByteBuffer content = pack.slice(name);
+        if (content == null) {
+            return null;
+        }
+        String etag = "\"" + Long.toHexString(content.remaining()) + "-" + Long.toHexString(pack.getLastModified()) + "\"";
+        return new Target(name, null, content, content.remaining(), pack.getLastModified(), etag);
+    }
+
+    private Path locateOriginal(String relativePath) {
+        for (Path root : roots) {
+            Path candidate = root.resolve(relativePath).normalize();
+            if (candidate.startsWith(root) && Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 强 ETag：内容寻址文件直接用内容哈希，其他文件用大小和修改时间
+     */
+    private String etag(String relativePath, Path file, BasicFileAttributes attributes) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        if (relativePath.startsWith("blobs/") && base.length() == 64) {
+            return "\"" + base + "\"";
+        }
+        return "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+    }
+
+    private boolean isImmutable(String relativePath) {
+        return relativePath.startsWith("blobs/") || relativePath.startsWith("comics/");
+    }
+
+    private boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals("*") || value.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 与当前版本不一致时忽略 Range，返回完整内容
+     */
+    private boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        long ifRangeDate = dateHeader(request, HttpHeaders.IF_RANGE);
+        return ifRangeDate != -1 && lastModified / 1000 <= ifRangeDate / 1000;
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
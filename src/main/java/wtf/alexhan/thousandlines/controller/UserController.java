@@ -1,13 +1,19 @@
 package wtf.alexhan.thousandlines.controller;
 
 import jakarta.servlet.http.HttpSession;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UserComicStats;
+import wtf.alexhan.thousandlines.model.Comic;
 import wtf.alexhan.thousandlines.model.User;
-import wtf.alexhan.thousandlines.model.UserRole;
 import wtf.alexhan.thousandlines.service.ComicService;
 import wtf.alexhan.thousandlines.service.StorageService;
 import wtf.alexhan.thousandlines.service.UserService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,6 +25,8 @@ import org.springframework.web.multipart.MultipartFile;
 @Controller
 public class UserController {
 
+    private static final int DASHBOARD_PAGE_SIZE = 12;
+
     @Autowired
     private UserService userService;
     
@@ -29,9 +37,8 @@ public class UserController {
     private StorageService storageService;
 
     @GetMapping("/profile/{username}")
-    public String showProfile(@PathVariable String username, HttpSession session, Model model) {
+    public String showProfile(@PathVariable String username, SessionUser currentUser, Model model) {
         // 检查用户是否登录
-        User currentUser = (User) session.getAttribute("user");
         if (currentUser == null) {
             return "redirect:/auth/login";
         }
@@ -43,7 +50,7 @@ public class UserController {
         }
         
         model.addAttribute("user", targetUser);
-        model.addAttribute("isOwnProfile", currentUser.getUsername().equals(username)); // 标记是否是自己的profile
+        model.addAttribute("isOwnProfile", currentUser.username().equals(username)); // 标记是否是自己的profile
         
         return "profile";
     }
@@ -60,14 +67,14 @@ public class UserController {
     @PostMapping("/profile/{username}/upload-avatar")
     public String uploadAvatar(@PathVariable String username, 
                               @RequestParam("avatarFile") MultipartFile avatarFile,
+                              SessionUser currentUser,
                               HttpSession session,
                               Model model) {
         try {
             User user = userService.getUserByUsername(username).orElseThrow(() -> new RuntimeException("User not found"));
             
             // 检查是否是当前登录用户或管理员
-            User currentUser = (User) session.getAttribute("user");
-            if (currentUser == null || (!currentUser.getUsername().equals(username) && currentUser.getRole() != UserRole.ADMIN)) {
+            if (currentUser == null || (!currentUser.username().equals(username) && !currentUser.isAdmin())) {
                 model.addAttribute("error", "没有权限上传头像");
                 return "profile";
             }
@@ -78,8 +85,8 @@ public class UserController {
             userService.updateUser(user);
             
             // 更新session中的用户信息
-            if (currentUser.getUsername().equals(username)) {
-                session.setAttribute("user", user);
+            if (currentUser.username().equals(username)) {
+                session.setAttribute(SessionUser.SESSION_ATTRIBUTE, SessionUser.from(user));
             }
             
             return "redirect:/profile/" + username;
@@ -91,36 +98,29 @@ public class UserController {
     }
     
     @GetMapping("/dashboard")
-    public String showDashboard(HttpSession session, Model model) {
-        // 获取当前登录用户
-        User currentUser = (User) session.getAttribute("user");
-        
+    public String showDashboard(@RequestParam(value = "page", defaultValue = "0") int page,
+                                SessionUser sessionUser, Model model) {
         // 检查用户是否登录
+        if (sessionUser == null) {
+            return "redirect:/auth/login";
+        }
+
+        // 仪表盘需要完整的用户资料（邮箱、简介），从数据库读取
+        User currentUser = userService.getUserByUsername(sessionUser.username()).orElse(null);
         if (currentUser == null) {
             return "redirect:/auth/login";
         }
         
-        // 获取用户上传的漫画列表
-        model.addAttribute("comics", comicService.getComicsByUser(currentUser));
-        
-        // 获取用户统计信息
-        long totalComics = comicService.countUserComics(currentUser);
-        long totalViews = comicService.getComicsByUser(currentUser).stream()
-                .mapToLong(comic -> comic.getViewCount() != null ? comic.getViewCount() : 0)
-                .sum();
-        
-        model.addAttribute("user", currentUser);
-        model.addAttribute("totalComics", totalComics);
-        model.addAttribute("totalViews", totalViews);
+        addDashboardAttributes(currentUser, page, "/dashboard", model);
         model.addAttribute("isOwnDashboard", true); // 标记是本用户的dashboard
         
         return "dashboard";
     }
     
     @GetMapping("/dashboard/{username}")
-    public String showUserDashboard(@PathVariable String username, HttpSession session, Model model) {
-        // 获取当前登录用户
-        User currentUser = (User) session.getAttribute("user");
+    public String showUserDashboard(@PathVariable String username,
+                                    @RequestParam(value = "page", defaultValue = "0") int page,
+                                    SessionUser currentUser, Model model) {
         
         // 检查用户是否登录
         if (currentUser == null) {
@@ -134,31 +134,37 @@ public class UserController {
         }
         
         // 检查是否是访问自己的dashboard或管理员
-        boolean isOwnDashboard = currentUser.getUsername().equals(username);
-        boolean isAdmin = currentUser.getRole() == UserRole.ADMIN;
+        boolean isOwnDashboard = currentUser.username().equals(username);
+        boolean isAdmin = currentUser.isAdmin();
         
         if (!isOwnDashboard && !isAdmin) {
             // 只能查看自己的dashboard或管理员可以查看任何用户的dashboard
             return "redirect:/dashboard";
         }
         
-        // 获取用户上传的漫画列表
-        model.addAttribute("comics", comicService.getComicsByUser(targetUser));
-        
-        // 获取用户统计信息
-        long totalComics = comicService.countUserComics(targetUser);
-        long totalViews = comicService.getComicsByUser(targetUser).stream()
-                .mapToLong(comic -> comic.getViewCount() != null ? comic.getViewCount() : 0)
-                .sum();
-        
-        model.addAttribute("user", targetUser);
-        model.addAttribute("totalComics", totalComics);
-        model.addAttribute("totalViews", totalViews);
+        addDashboardAttributes(targetUser, page, "/dashboard/" + username, model);
         model.addAttribute("isOwnDashboard", isOwnDashboard); // 标记是否是自己的dashboard
         
         return "dashboard";
     }
     
+    /**
+     * 仪表盘公共数据：分页的漫画列表和一次聚合查询得到的统计信息
+     */
+    private void addDashboardAttributes(User user, int page, String dashboardUrl, Model model) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), DASHBOARD_PAGE_SIZE, Sort.by("createdAt").descending());
+        Page<Comic> comicPage = comicService.getComicsByUser(user, pageable);
+        UserComicStats stats = comicService.getUserStats(user);
+
+        model.addAttribute("user", user);
+        model.addAttribute("comics", comicPage.getContent());
+        model.addAttribute("currentPage", comicPage.getNumber());
+        model.addAttribute("totalPages", comicPage.getTotalPages());
+        model.addAttribute("dashboardUrl", dashboardUrl);
+        model.addAttribute("totalComics", stats.getComicCount());
+        model.addAttribute("totalViews", stats.getTotalViews());
+    }
+
     @GetMapping("/terms")
     public String showTerms() {
         return "terms";
@@ -0,0 +1,21 @@
+package wtf.alexhan.thousandlines.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 分块上传会话的状态：每个文件已接收的字节数，客户端据此续传
+ * 文件序号 0 为封面，1..N 为漫画页
+ */
+public record ChunkedUploadStatus(String id, List<FileStatus> files, Instant expiresAt) {
+
+    public record FileStatus(int index, String name, long length, long offset) {
+        public boolean isComplete() {
+            return offset == length;
+        }
+    }
+
+    public boolean isComplete() {
+        return files.stream().allMatch(FileStatus::isComplete);
+    }
+}
@@ -0,0 +1,60 @@
+package wtf.alexhan.thousandlines.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 漫画列表卡片：只包含列表页需要的字段，不加载上传者和完整实体
+ */
+public class ComicCard {
+    private Long id;
+    private String title;
+    private String author;
+    private String description;
+    private String coverImagePath;
+    private Integer chapterCount;
+    private Long viewCount;
+    private long pendingViewCount; // 尚未写回数据库的浏览增量
+    private LocalDateTime createdAt;
+    private List<String> tags = new ArrayList<>();
+
+    // JPQL 构造表达式使用
+    public ComicCard(Long id, String title, String author, String description, String coverImagePath,
+                     Integer chapterCount, Long viewCount, LocalDateTime createdAt) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.description = description;
+        this.coverImagePath = coverImagePath;
+        this.chapterCount = chapterCount;
+        this.viewCount = viewCount != null ? viewCount : 0L;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    public String getAuthor() { return author; }
+
+    public String getDescription() { return description; }
+
+    public String getCoverImagePath() { return coverImagePath; }
+
+    public Integer getChapterCount() { return chapterCount; }
+
+    public Long getViewCount() { return (viewCount == null ? 0 : viewCount) + pendingViewCount; }
+
+    // 数据库中的浏览量，用于生成游标
+    public Long getStoredViewCount() { return viewCount; }
+
+    public long getPendingViewCount() { return pendingViewCount; }
+    public void setPendingViewCount(long pendingViewCount) { this.pendingViewCount = pendingViewCount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags; }
+}
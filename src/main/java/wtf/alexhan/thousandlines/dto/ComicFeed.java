@@ -0,0 +1,20 @@
+package wtf.alexhan.thousandlines.dto;
+
+import java.util.List;
+
+/**
+ * 无限滚动列表的一段结果，nextCursor 为 null 表示没有更多
+ */
+public class ComicFeed {
+    private final List<ComicCard> items;
+    private final String nextCursor;
+
+    public ComicFeed(List<ComicCard> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters
+    public List<ComicCard> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,20 @@
+package wtf.alexhan.thousandlines.dto;
+
+import java.util.List;
+
+/**
+ * 阅读器的页面清单：每页的地址、字节数、尺寸、内容哈希和可用的衍生宽度
+ * version 随页面内容和衍生宽度配置变化，用作 ETag
+ */
+public record PageManifest(Long comicId, String version, List<Page> pages) {
+
+    /**
+     * 一页的原图和衍生图；variants 只包含比原图窄的宽度，按宽度升序
+     */
+    public record Page(int number, String url, long bytes, int width, int height, String sha256,
+                       List<Variant> variants) {
+    }
+
+    public record Variant(int width, int height, String url) {
+    }
+}
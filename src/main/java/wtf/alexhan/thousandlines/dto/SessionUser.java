@@ -0,0 +1,30 @@
+package wtf.alexhan.thousandlines.dto;
+
+import wtf.alexhan.thousandlines.model.User;
+import wtf.alexhan.thousandlines.model.UserRole;
+
+import java.io.Serializable;
+
+/**
+ * 保存在 HttpSession 中的登录用户，只包含页面和权限判断需要的字段，不含密码哈希
+ * 模板中通过 session.user 访问
+ */
+public record SessionUser(Long id, String username, UserRole role, String avatarPath) implements Serializable {
+
+    public static final String SESSION_ATTRIBUTE = "user";
+
+    public static SessionUser from(User user) {
+        return new SessionUser(user.getId(), user.getUsername(), user.getRole(), user.getAvatarPath());
+    }
+
+    public boolean isAdmin() {
+        return role == UserRole.ADMIN;
+    }
+
+    /**
+     * 是否可以管理（编辑、删除）属于 ownerId 的内容
+     */
+    public boolean canManage(Long ownerId) {
+        return id.equals(ownerId) || isAdmin();
+    }
+}
@@ -0,0 +1,18 @@
+package wtf.alexhan.thousandlines.dto;
+
+/**
+ * 用户的漫画统计：上传数量和总浏览量，由一次聚合查询得到
+ */
+public class UserComicStats {
+    private final long comicCount;
+    private final long totalViews;
+
+    public UserComicStats(Long comicCount, Long totalViews) {
+        this.comicCount = comicCount != null ? comicCount : 0;
+        this.totalViews = totalViews != null ? totalViews : 0;
+    }
+
+    // Getters
+    public long getComicCount() { return comicCount; }
+    public long getTotalViews() { return totalViews; }
+}
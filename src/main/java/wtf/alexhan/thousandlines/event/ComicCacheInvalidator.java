@@ -0,0 +1,41 @@
+package wtf.alexhan.thousandlines.event;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import wtf.alexhan.thousandlines.config.CacheNames;
+
+/**
+ * 漫画变化后清理列表、标签和页面清单缓存；在事务提交后执行，避免其他请求在提交前把旧数据重新放回缓存
+ */
+@Component
+public class ComicCacheInvalidator {
+    private final CacheManager cacheManager;
+
+    public ComicCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onComicChanged(ComicChangedEvent event) {
+        clear(CacheNames.COMIC_PAGES);
+        // 只有封面变化时标签不受影响
+        if (event.type() != ComicChangedEvent.Type.COVER_UPDATED) {
+            clear(CacheNames.ALL_TAGS);
+        }
+        if (event.type() == ComicChangedEvent.Type.DELETED) {
+            Cache manifests = cacheManager.getCache(CacheNames.COMIC_MANIFESTS);
+            if (manifests != null) {
+                manifests.evict(event.comicId());
+            }
+        }
+    }
+
+    private void clear(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
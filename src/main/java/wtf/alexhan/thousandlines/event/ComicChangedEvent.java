@@ -0,0 +1,14 @@
+package wtf.alexhan.thousandlines.event;
+
+/**
+ * 漫画发生变化（上传、修改、更换封面、删除）时发布的领域事件
+ */
+public record ComicChangedEvent(Long comicId, Type type) {
+
+    public enum Type {
+        UPLOADED,
+        UPDATED,
+        COVER_UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,48 @@
+package wtf.alexhan.thousandlines.job;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+import wtf.alexhan.thousandlines.service.StorageService;
+
+import java.io.IOException;
+
+/**
+ * 生成封面和漫画页的衍生尺寸；已生成的尺寸会跳过
+ * 开启 app.comic-pack.enabled 时，生成完成后把漫画目录打包为单个文件
+ */
+@Component
+public class ComicDerivativesJobHandler implements JobHandler {
+    public static final String TYPE = "comic.derivatives";
+
+    private final ComicRepository comicRepository;
+    private final StorageService storageService;
+    private final boolean packComics;
+
+    public ComicDerivativesJobHandler(ComicRepository comicRepository, StorageService storageService,
+                                      @Value("${app.comic-pack.enabled:false}") boolean packComics) {
+        this.comicRepository = comicRepository;
+        this.storageService = storageService;
+        this.packComics = packComics;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public void handle(BackgroundJob job) throws IOException {
+        Comic comic = comicRepository.findById(job.getComicId()).orElse(null);
+        if (comic == null) {
+            // 漫画已删除
+            return;
+        }
+        storageService.generateDerivatives(comic.getCoverImagePath(), comic.getFolderPath());
+        if (packComics && comic.getFolderPath() != null) {
+            storageService.packComicFolder(comic.getFolderPath());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package wtf.alexhan.thousandlines.job;
+
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.service.ComicManifestService;
+
+import java.io.IOException;
+
+/**
+ * 入库后计算阅读器页面清单需要的页面元数据（字节数、尺寸、内容哈希）
+ */
+@Component
+public class ComicManifestJobHandler implements JobHandler {
+    public static final String TYPE = "comic.manifest";
+
+    private final ComicManifestService comicManifestService;
+
+    public ComicManifestJobHandler(ComicManifestService comicManifestService) {
+        this.comicManifestService = comicManifestService;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public void handle(BackgroundJob job) throws IOException {
+        comicManifestService.refresh(job.getComicId());
+    }
+}
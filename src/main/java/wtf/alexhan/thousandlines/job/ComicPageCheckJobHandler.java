@@ -0,0 +1,89 @@
+package wtf.alexhan.thousandlines.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+import wtf.alexhan.thousandlines.service.StorageService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 校验漫画页：只读取图片头确认能解码，并按目录中实际的页面数校正页数
+ */
+@Component
+public class ComicPageCheckJobHandler implements JobHandler {
+    private static final Logger log = LoggerFactory.getLogger(ComicPageCheckJobHandler.class);
+
+    public static final String TYPE = "comic.check-pages";
+
+    private final ComicRepository comicRepository;
+    private final StorageService storageService;
+
+    public ComicPageCheckJobHandler(ComicRepository comicRepository, StorageService storageService) {
+        this.comicRepository = comicRepository;
+        this.storageService = storageService;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public void handle(BackgroundJob job) throws IOException {
+        Comic comic = comicRepository.findById(job.getComicId()).orElse(null);
+        if (comic == null) {
+            return;
+        }
+
+        List<String> pages = storageService.comicPageNames(comic.getFolderPath());
+        int unreadable = 0;
+        for (String page : pages) {
+            if (!isReadableImage(comic.getFolderPath(), page)) {
+                unreadable++;
+                log.warn("漫画 {} 的页面无法解码: {}", comic.getId(), page);
+            }
+        }
+        if (unreadable > 0) {
+            log.warn("漫画 {} 共有 {} 页无法解码", comic.getId(), unreadable);
+        }
+
+        if (comic.getChapterCount() == null || comic.getChapterCount() != pages.size()) {
+            comicRepository.updateChapterCount(comic.getId(), pages.size());
+            log.info("漫画 {} 的页数从 {} 校正为 {}", comic.getId(), comic.getChapterCount(), pages.size());
+        }
+    }
+
+    private boolean isReadableImage(String folder, String page) throws IOException {
+        InputStream content = storageService.openComicFile(folder, page);
+        if (content == null) {
+            return false;
+        }
+        // 只读取文件头，用内存缓存，不创建临时文件
+        try (content; ImageInputStream in = new MemoryCacheImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+            } catch (IOException e) {
+                return false;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
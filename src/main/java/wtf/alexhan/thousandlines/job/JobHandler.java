@@ -0,0 +1,14 @@
+package wtf.alexhan.thousandlines.job;
+
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+
+/**
+ * 后台任务处理器：按 type 匹配任务。任务可能因重试或实例崩溃被执行多次，处理必须是幂等的；
+ * 抛出异常表示本次失败，按退避时间重试
+ */
+public interface JobHandler {
+
+    String type();
+
+    void handle(BackgroundJob job) throws Exception;
+}
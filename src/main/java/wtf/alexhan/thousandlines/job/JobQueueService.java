@@ -0,0 +1,322 @@
+package wtf.alexhan.thousandlines.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.model.ComicStatus;
+import wtf.alexhan.thousandlines.model.JobStatus;
+import wtf.alexhan.thousandlines.repository.BackgroundJobRepository;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+import wtf.alexhan.thousandlines.service.TransactionHooks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 持久化的后台任务队列：任务写在 background_jobs 表中，和业务数据同一事务提交，重启后继续执行
+ *
+ * 定时从表中认领到期任务（条件更新，多实例部署时同一任务只会被一个实例认领），
+ * 在虚拟线程中执行，同时执行的任务数有上限；失败按指数退避重试，超过次数后标记为 FAILED。
+ * 执行中的任务带租约，执行期间定时心跳续约；实例崩溃后租约到期的任务重新排队，重试次数已用完的标记为 FAILED
+ */
+@Service
+public class JobQueueService {
+    private static final Logger log = LoggerFactory.getLogger(JobQueueService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    // 还没结束的任务，漫画在这些任务完成前显示为处理中
+    private static final EnumSet<JobStatus> UNFINISHED = EnumSet.of(JobStatus.PENDING, JobStatus.RUNNING);
+
+    private final BackgroundJobRepository jobRepository;
+    private final ComicRepository comicRepository;
+    private final Map<String, JobHandler> handlers = new HashMap<>();
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Duration retention;
+
+    // 实例标识，用于租约
+    private final String workerId = UUID.randomUUID().toString();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("job-", 1).factory());
+    private final Semaphore permits;
+    // 不用 synchronized：dispatch 会在虚拟线程中调用，持锁执行数据库操作时 synchronized 会固定载体线程
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    // 本实例正在执行的任务 -> 认领时的执行次数，心跳据此续约
+    private final Map<Long, Integer> running = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
+
+    private final Counter succeeded;
+    private final Counter retried;
+    private final Counter failed;
+
+    public JobQueueService(BackgroundJobRepository jobRepository, ComicRepository comicRepository,
+                           List<JobHandler> jobHandlers, MeterRegistry meterRegistry,
+                           @Value("${app.jobs.concurrency:4}") int concurrency,
+                           @Value("${app.jobs.max-attempts:5}") int maxAttempts,
+                           @Value("${app.jobs.backoff:10s}") Duration backoff,
+                           @Value("${app.jobs.max-backoff:1h}") Duration maxBackoff,
+                           @Value("${app.jobs.lease:10m}") Duration lease,
+                           @Value("${app.jobs.retention:7d}") Duration retention) {
+        this.jobRepository = jobRepository;
+        this.comicRepository = comicRepository;
+        for (JobHandler handler : jobHandlers) {
+            handlers.put(handler.type(), handler);
+        }
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.retention = retention;
+        this.succeeded = Counter.builder("jobs.completed").tag("result", "success").register(meterRegistry);
+        this.retried = Counter.builder("jobs.completed").tag("result", "retry").register(meterRegistry);
+        this.failed = Counter.builder("jobs.completed").tag("result", "failed").register(meterRegistry);
+    }
+
+    /**
+     * 加入一个任务；在事务中调用时随事务一起提交，提交后立即尝试执行
+     */
+    public void enqueue(String type, Long comicId) {
+        if (!handlers.containsKey(type)) {
+            throw new IllegalArgumentException("未知的任务类型: " + type);
+        }
+        BackgroundJob job = new BackgroundJob();
+        job.setType(type);
+        job.setComicId(comicId);
+        jobRepository.save(job);
+
+        TransactionHooks.afterCommit(this::wakeUp);
+    }
+
+    /**
+     * 同一部漫画没有未完成的同类任务时才加入；用于补算存量数据，重复运行不会重复排队
+     */
+    public void enqueueIfAbsent(String type, Long comicId) {
+        if (jobRepository.countByComicIdAndTypeAndStatusIn(comicId, type, UNFINISHED) == 0) {
+            enqueue(type, comicId);
+        }
+    }
+
+    /**
+     * 漫画还有没完成的任务
+     */
+    public boolean hasUnfinishedJobs(Long comicId) {
+        return jobRepository.countByComicIdAndStatusIn(comicId, UNFINISHED) > 0;
+    }
+
+    /**
+     * 删除漫画的全部任务（漫画删除时在同一事务中调用）
+     */
+    public void discard(Long comicId) {
+        jobRepository.deleteByComicId(comicId);
+    }
+
+    /**
+     * 认领到期任务并提交执行；同时把租约过期的任务重新排队
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (shuttingDown) {
+            return;
+        }
+        dispatchLock.lock();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            expireLeases(now);
+
+            int free = permits.availablePermits();
+            if (free == 0) {
+                return;
+            }
+            for (Long jobId : jobRepository.findDueIds(JobStatus.PENDING, now, PageRequest.of(0, free))) {
+                if (!permits.tryAcquire()) {
+                    break;
+                }
+                if (jobRepository.claim(jobId, workerId, now.plus(lease), now, JobStatus.PENDING, JobStatus.RUNNING) == 0) {
+                    // 已被其他实例认领
+                    permits.release();
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        run(jobId);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * 心跳：给本实例执行中的任务续约，执行时间超过租约的任务不会被当作实例崩溃而重复执行
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        running.forEach((jobId, attempt) -> {
+            if (jobRepository.extendLease(jobId, workerId, attempt, JobStatus.RUNNING, now.plus(lease), now) == 0) {
+                log.warn("任务 {} 第 {} 次执行的租约已丢失，结果将被忽略", jobId, attempt);
+            }
+        });
+    }
+
+    /**
+     * 租约过期的任务：还有重试次数的重新排队，用完的标记为失败
+     */
+    private void expireLeases(LocalDateTime now) {
+        List<Long> exhaustedComics = jobRepository.findExhaustedComicIds(now, maxAttempts, JobStatus.RUNNING);
+        int exhausted = jobRepository.failExhausted(now, maxAttempts, "租约过期，已达到最大重试次数",
+                JobStatus.RUNNING, JobStatus.FAILED);
+        if (exhausted > 0) {
+            failed.increment(exhausted);
+            log.error("{} 个任务租约过期且已执行 {} 次，标记为失败", exhausted, maxAttempts);
+            exhaustedComics.forEach(this::markComicReadyIfDone);
+        }
+        int requeued = jobRepository.requeueExpired(now, maxAttempts, JobStatus.PENDING, JobStatus.RUNNING);
+        if (requeued > 0) {
+            log.warn("{} 个任务租约过期，已重新排队", requeued);
+        }
+    }
+
+    /**
+     * 定时清理已完成的历史任务；失败的任务保留，便于排查
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.cleanup-interval-ms:3600000}")
+    public void purgeFinished() {
+        int purged = jobRepository.deleteFinishedBefore(JobStatus.DONE, LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.info("已清理 {} 个已完成的后台任务", purged);
+        }
+    }
+
+    /**
+     * 停机：不再认领新任务，等待执行中的任务结束，没结束的放回队列
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        shuttingDown = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+        int requeued = jobRepository.requeueOwned(workerId, LocalDateTime.now(), JobStatus.PENDING, JobStatus.RUNNING);
+        if (requeued > 0) {
+            log.info("停机时 {} 个任务未完成，已放回队列", requeued);
+        }
+    }
+
+    private void wakeUp() {
+        if (!shuttingDown) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    private void run(Long jobId) {
+        BackgroundJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        int attempt = job.getAttempts();
+        running.put(jobId, attempt);
+        try {
+            execute(job, attempt);
+        } finally {
+            running.remove(jobId, attempt);
+        }
+    }
+
+    private void execute(BackgroundJob job, int attempt) {
+        Long jobId = job.getId();
+        JobHandler handler = handlers.get(job.getType());
+        try {
+            if (handler == null) {
+                throw new IllegalStateException("未知的任务类型: " + job.getType());
+            }
+            handler.handle(job);
+        } catch (Exception e) {
+            boolean retry = handler != null && attempt < maxAttempts;
+            LocalDateTime now = LocalDateTime.now();
+            JobStatus status = retry ? JobStatus.PENDING : JobStatus.FAILED;
+            LocalDateTime runAt = retry ? now.plus(backoff(attempt)) : job.getRunAt();
+            if (!release(job, attempt, status, runAt, truncate(e), now)) {
+                return;
+            }
+            if (retry) {
+                retried.increment();
+                log.warn("任务 {}（{}，漫画 {}）第 {} 次执行失败，{} 后重试: {}", jobId, job.getType(), job.getComicId(),
+                        attempt, runAt, e.getMessage());
+                return;
+            }
+            failed.increment();
+            log.error("任务 {}（{}，漫画 {}）执行 {} 次后仍失败", jobId, job.getType(), job.getComicId(), attempt, e);
+            markComicReadyIfDone(job.getComicId());
+            return;
+        }
+
+        if (release(job, attempt, JobStatus.DONE, job.getRunAt(), null, LocalDateTime.now())) {
+            succeeded.increment();
+            markComicReadyIfDone(job.getComicId());
+        }
+    }
+
+    /**
+     * 结束本次执行；租约已丢失（任务被重新排队或再次认领）时不修改，由新的那次执行决定结果
+     */
+    private boolean release(BackgroundJob job, int attempt, JobStatus status, LocalDateTime runAt, String error,
+                            LocalDateTime now) {
+        if (jobRepository.release(job.getId(), workerId, attempt, JobStatus.RUNNING, status, runAt, error, now) > 0) {
+            return true;
+        }
+        log.warn("任务 {}（{}）第 {} 次执行结束时租约已丢失，不更新状态", job.getId(), job.getType(), attempt);
+        return false;
+    }
+
+    /**
+     * 漫画的任务全部结束（成功或最终失败）后不再显示处理中；
+     * 每个任务在自己的结束状态提交后才检查，最后结束的任务一定能看到其他任务都已结束
+     */
+    private void markComicReadyIfDone(Long comicId) {
+        if (comicId != null && !hasUnfinishedJobs(comicId)) {
+            comicRepository.updateStatus(comicId, ComicStatus.READY);
+        }
+    }
+
+    /**
+     * 指数退避加随机抖动：backoff、2 × backoff、4 × backoff ...，不超过 maxBackoff
+     */
+    private Duration backoff(int attempts) {
+        long base = backoff.toMillis() << Math.min(Math.max(attempts - 1, 0), 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        long jitter = ThreadLocalRandom.current().nextLong(Math.max(1, capped / 5));
+        return Duration.ofMillis(capped + jitter);
+    }
+
+    private static String truncate(Exception e) {
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
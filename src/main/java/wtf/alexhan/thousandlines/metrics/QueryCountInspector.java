@@ -0,0 +1,26 @@
+package wtf.alexhan.thousandlines.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 统计当前线程执行的 Hibernate SQL 语句数，由 QueryCountFilter 按请求读取和清零
+ * 通过 hibernate.session_factory.statement_inspector 配置，由 Hibernate 自行实例化
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,89 @@
+package wtf.alexhan.thousandlines.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 后台任务队列：与触发它的业务数据在同一事务中写入，重启后仍会继续执行
+ */
+@Entity
+@Table(name = "background_jobs", indexes = {
+        // 取到期任务
+        @Index(name = "idx_background_jobs_status_run_at", columnList = "status, runAt"),
+        @Index(name = "idx_background_jobs_comic_id", columnList = "comicId")
+})
+public class BackgroundJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String type;
+
+    private Long comicId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JobStatus status = JobStatus.PENDING;
+
+    // 已执行次数（包括正在执行的这次）
+    private int attempts;
+
+    // 最早执行时间，失败重试时按退避时间后移
+    @Column(nullable = false)
+    private LocalDateTime runAt;
+
+    // 执行中的任务由哪个实例持有、租约到期时间；实例崩溃后租约到期的任务会重新排队
+    @Column(length = 64)
+    private String lockedBy;
+    private LocalDateTime lockedUntil;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (runAt == null) {
+            runAt = createdAt;
+        }
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public Long getComicId() { return comicId; }
+    public void setComicId(Long comicId) { this.comicId = comicId; }
+
+    public JobStatus getStatus() { return status; }
+    public void setStatus(JobStatus status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getRunAt() { return runAt; }
+    public void setRunAt(LocalDateTime runAt) { this.runAt = runAt; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
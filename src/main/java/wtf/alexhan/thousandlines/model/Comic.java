@@ -6,7 +6,11 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "comics")
+@Table(name = "comics", indexes = {
+        // 热门和最新列表的游标分页索引
+        @Index(name = "idx_comics_view_count_id", columnList = "viewCount, id"),
+        @Index(name = "idx_comics_created_at_id", columnList = "createdAt, id")
+})
 public class Comic {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,9 +24,21 @@ public class Comic {
     private String coverImagePath;
     private String folderPath;
     private Integer chapterCount = 0;
+
+    // 浏览量只通过 ViewCountService 的增量 UPDATE 写回，实体保存时不覆盖
+    @Column(updatable = false)
     private Long viewCount = 0L;
 
-    @ManyToOne
+    // 后台任务完成前为 PROCESSING；之后只通过 ComicRepository.updateStatus 修改，实体保存时不覆盖
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, updatable = false)
+    private ComicStatus status = ComicStatus.READY;
+
+    // 尚未写回数据库的浏览增量
+    @Transient
+    private long pendingViewCount;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -70,9 +86,17 @@ public class Comic {
     public Integer getChapterCount() { return chapterCount; }
     public void setChapterCount(Integer chapterCount) { this.chapterCount = chapterCount; }
 
-    public Long getViewCount() { return viewCount; }
+    public Long getViewCount() { return (viewCount != null ? viewCount : 0L) + pendingViewCount; }
     public void setViewCount(Long viewCount) { this.viewCount = viewCount; }
 
+    public long getPendingViewCount() { return pendingViewCount; }
+    public void setPendingViewCount(long pendingViewCount) { this.pendingViewCount = pendingViewCount; }
+
+    public ComicStatus getStatus() { return status == null ? ComicStatus.READY : status; }
+    public void setStatus(ComicStatus status) { this.status = status; }
+
+    public boolean isProcessing() { return getStatus() == ComicStatus.PROCESSING; }
+
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
@@ -0,0 +1,53 @@
+package wtf.alexhan.thousandlines.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 漫画页面的元数据（字节数、尺寸、内容哈希），入库时计算一次，供阅读器的页面清单使用
+ */
+@Entity
+@Table(name = "comic_pages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_comic_pages_comic_page", columnNames = {"comicId", "pageNumber"})
+})
+public class ComicPage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long comicId;
+
+    // 从 1 开始，对应 {页码}.jpg
+    @Column(nullable = false)
+    private int pageNumber;
+
+    private long bytes;
+    private int width;
+    private int height;
+
+    // 原图内容的 SHA-256（十六进制）
+    @Column(length = 64)
+    private String sha256;
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getComicId() { return comicId; }
+    public void setComicId(Long comicId) { this.comicId = comicId; }
+
+    public int getPageNumber() { return pageNumber; }
+    public void setPageNumber(int pageNumber) { this.pageNumber = pageNumber; }
+
+    public long getBytes() { return bytes; }
+    public void setBytes(long bytes) { this.bytes = bytes; }
+
+    public int getWidth() { return width; }
+    public void setWidth(int width) { this.width = width; }
+
+    public int getHeight() { return height; }
+    public void setHeight(int height) { this.height = height; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+}
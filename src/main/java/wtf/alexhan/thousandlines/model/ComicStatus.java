@@ -0,0 +1,8 @@
+package wtf.alexhan.thousandlines.model;
+
+/**
+ * 漫画状态：上传后原图已保存，但后台任务（衍生图、页面校验）还没完成时为 PROCESSING
+ */
+public enum ComicStatus {
+    READY, PROCESSING
+}
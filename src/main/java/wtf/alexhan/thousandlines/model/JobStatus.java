@@ -0,0 +1,5 @@
+package wtf.alexhan.thousandlines.model;
+
+public enum JobStatus {
+    PENDING, RUNNING, DONE, FAILED
+}
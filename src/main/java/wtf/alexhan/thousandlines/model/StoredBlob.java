@@ -0,0 +1,37 @@
+package wtf.alexhan.thousandlines.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 内容寻址存储中的一个文件，记录被引用的次数，引用归零时删除
+ */
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+    @Id
+    @Column(length = 80)
+    private String blobKey; // sha256 + 扩展名
+
+    private Long size;
+    private Long refCount = 0L;
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getBlobKey() { return blobKey; }
+    public void setBlobKey(String blobKey) { this.blobKey = blobKey; }
+
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+
+    public Long getRefCount() { return refCount; }
+    public void setRefCount(Long refCount) { this.refCount = refCount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
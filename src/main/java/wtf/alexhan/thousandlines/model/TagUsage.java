@@ -0,0 +1,28 @@
+package wtf.alexhan.thousandlines.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 标签使用次数（被多少部漫画使用），随漫画的标签变化在同一事务中维护
+ */
+@Entity
+@Table(name = "tag_usage", indexes = @Index(name = "idx_tag_usage_comic_count", columnList = "comicCount"))
+public class TagUsage {
+    @Id
+    private Long tagId;
+
+    @Column(nullable = false)
+    private String tagName;
+
+    private Long comicCount = 0L;
+
+    // Getters and Setters
+    public Long getTagId() { return tagId; }
+    public void setTagId(Long tagId) { this.tagId = tagId; }
+
+    public String getTagName() { return tagName; }
+    public void setTagName(String tagName) { this.tagName = tagName; }
+
+    public Long getComicCount() { return comicCount; }
+    public void setComicCount(Long comicCount) { this.comicCount = comicCount; }
+}
@@ -0,0 +1,98 @@
+package wtf.alexhan.thousandlines.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.model.JobStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, Long> {
+
+    // 到期的待执行任务，先到期的先执行
+    @Query("SELECT j.id FROM BackgroundJob j WHERE j.status = :status AND j.runAt <= :now ORDER BY j.runAt, j.id")
+    List<Long> findDueIds(@Param("status") JobStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    // 认领任务：只有一个实例能把 PENDING 改成 RUNNING，返回 0 表示已被其他实例认领
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :running, j.lockedBy = :worker, j.lockedUntil = :lockedUntil, " +
+            "j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id = :id AND j.status = :pending")
+    int claim(@Param("id") Long id, @Param("worker") String worker, @Param("lockedUntil") LocalDateTime lockedUntil,
+              @Param("now") LocalDateTime now,
+              @Param("pending") JobStatus pending, @Param("running") JobStatus running);
+
+    // 结束一次执行：完成、失败或重新排队。只能由持有租约的那一次执行修改：
+    // 租约过期后同一任务可能被再次认领（包括被本实例认领），attempts 区分是哪一次执行
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :status, j.lockedBy = NULL, j.lockedUntil = NULL, " +
+            "j.runAt = :runAt, j.lastError = :error, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.lockedBy = :worker AND j.attempts = :attempt AND j.status = :running")
+    int release(@Param("id") Long id, @Param("worker") String worker, @Param("attempt") int attempt,
+                @Param("running") JobStatus running, @Param("status") JobStatus status,
+                @Param("runAt") LocalDateTime runAt, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // 心跳：延长执行中任务的租约，返回 0 表示租约已经丢失
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.lockedUntil = :lockedUntil, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.lockedBy = :worker AND j.attempts = :attempt AND j.status = :running")
+    int extendLease(@Param("id") Long id, @Param("worker") String worker, @Param("attempt") int attempt,
+                    @Param("running") JobStatus running, @Param("lockedUntil") LocalDateTime lockedUntil,
+                    @Param("now") LocalDateTime now);
+
+    // 租约过期且已用完重试次数的任务所属的漫画
+    @Query("SELECT DISTINCT j.comicId FROM BackgroundJob j WHERE j.status = :running AND j.lockedUntil < :now " +
+            "AND j.attempts >= :maxAttempts AND j.comicId IS NOT NULL")
+    List<Long> findExhaustedComicIds(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                                     @Param("running") JobStatus running);
+
+    // 租约过期且已用完重试次数的任务不再排队，直接标记失败（每次执行都让实例崩溃的任务不会无限重试）
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :failed, j.lockedBy = NULL, j.lockedUntil = NULL, " +
+            "j.lastError = :error, j.updatedAt = :now " +
+            "WHERE j.status = :running AND j.lockedUntil < :now AND j.attempts >= :maxAttempts")
+    int failExhausted(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts, @Param("error") String error,
+                      @Param("running") JobStatus running, @Param("failed") JobStatus failed);
+
+    // 租约过期（实例崩溃或被杀掉）的任务重新排队
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :pending, j.lockedBy = NULL, j.lockedUntil = NULL, j.updatedAt = :now " +
+            "WHERE j.status = :running AND j.lockedUntil < :now AND j.attempts < :maxAttempts")
+    int requeueExpired(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                       @Param("pending") JobStatus pending, @Param("running") JobStatus running);
+
+    // 停机时把本实例还没执行完的任务放回队列
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :pending, j.lockedBy = NULL, j.lockedUntil = NULL, j.updatedAt = :now " +
+            "WHERE j.status = :running AND j.lockedBy = :worker")
+    int requeueOwned(@Param("worker") String worker, @Param("now") LocalDateTime now,
+                     @Param("pending") JobStatus pending, @Param("running") JobStatus running);
+
+    long countByComicIdAndStatusIn(Long comicId, Collection<JobStatus> statuses);
+
+    long countByComicIdAndTypeAndStatusIn(Long comicId, String type, Collection<JobStatus> statuses);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM BackgroundJob j WHERE j.comicId = :comicId")
+    int deleteByComicId(@Param("comicId") Long comicId);
+
+    // 清理已完成的历史任务
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM BackgroundJob j WHERE j.status = :status AND j.updatedAt < :before")
+    int deleteFinishedBefore(@Param("status") JobStatus status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,22 @@
+package wtf.alexhan.thousandlines.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.ComicPage;
+
+import java.util.List;
+
+@Repository
+public interface ComicPageRepository extends JpaRepository<ComicPage, Long> {
+
+    List<ComicPage> findByComicIdOrderByPageNumber(Long comicId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ComicPage p WHERE p.comicId = :comicId")
+    int deleteByComicId(@Param("comicId") Long comicId);
+}
@@ -3,16 +3,26 @@ package wtf.alexhan.thousandlines.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.dto.ComicCard;
+import wtf.alexhan.thousandlines.dto.UserComicStats;
 import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.ComicStatus;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ComicRepository extends JpaRepository<Comic, Long> {
+public interface ComicRepository extends JpaRepository<Comic, Long>, JpaSpecificationExecutor<Comic> {
 
     // 基本查询
     List<Comic> findByTitleContainingIgnoreCase(String title);
@@ -22,11 +32,74 @@ public interface ComicRepository extends JpaRepository<Comic, Long> {
     // 分页查询
     Page<Comic> findAll(Pageable pageable);
     Page<Comic> findByUserId(Long userId, Pageable pageable);
-    Page<Comic> findAllByOrderByViewCountDesc(Pageable pageable);
-    Page<Comic> findAllByOrderByCreatedAtDesc(Pageable pageable);
     Page<Comic> findByTitleContainingIgnoreCase(String title, Pageable pageable);
     Page<Comic> findByAuthorContainingIgnoreCase(String author, Pageable pageable);
 
+    // 详情页：同时加载标签，避免再单独查询一次
+    @EntityGraph(attributePaths = "tags")
+    Optional<Comic> findWithTagsById(Long id);
+
+    // 列表页卡片：只查询需要的字段，排序由 Pageable 指定，不加载上传者
+    @Query(value = "SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c",
+            countQuery = "SELECT COUNT(c) FROM Comic c")
+    Page<ComicCard> findCards(Pageable pageable);
+
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c WHERE c.id IN :ids")
+    List<ComicCard> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 游标分页（keyset）：按 (view_count, id) 和 (created_at, id) 定位，深翻页不再扫描并丢弃前面的行
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c " +
+            "ORDER BY c.viewCount DESC, c.id DESC")
+    List<ComicCard> findPopularCards(Pageable limit);
+
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c " +
+            "WHERE c.viewCount < :viewCount OR (c.viewCount = :viewCount AND c.id < :id) " +
+            "ORDER BY c.viewCount DESC, c.id DESC")
+    List<ComicCard> findPopularCardsAfter(@Param("viewCount") long viewCount, @Param("id") long id, Pageable limit);
+
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<ComicCard> findLatestCards(Pageable limit);
+
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.ComicCard(c.id, c.title, c.author, c.description, " +
+            "c.coverImagePath, c.chapterCount, c.viewCount, c.createdAt) FROM Comic c " +
+            "WHERE c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<ComicCard> findLatestCardsAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                         Pageable limit);
+
+    // 一次查出一页漫画的全部标签名，返回 [漫画ID, 标签名]
+    @Query("SELECT c.id, t.name FROM Comic c JOIN c.tags t WHERE c.id IN :ids")
+    List<Object[]> findTagNamesByComicIds(@Param("ids") Collection<Long> ids);
+
+    // 后台任务更新漫画状态和校正页数
+    @Transactional
+    @Modifying
+    @Query("UPDATE Comic c SET c.status = :status WHERE c.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") ComicStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Comic c SET c.chapterCount = :chapterCount WHERE c.id = :id")
+    int updateChapterCount(@Param("id") Long id, @Param("chapterCount") int chapterCount);
+
+    // 相关推荐索引：全部漫画的 [漫画ID, 作者] 和 [漫画ID, 标签ID]，不加载实体
+    @Query("SELECT c.id, c.author FROM Comic c")
+    List<Object[]> findAllAuthors();
+
+    @Query(value = "SELECT comic_id, tag_id FROM comic_tags", nativeQuery = true)
+    List<Object[]> findAllComicTagIds();
+
+    // 还没有页面元数据的漫画（页面清单上线前上传的）
+    @Query("SELECT c.id FROM Comic c WHERE c.folderPath IS NOT NULL "
+            + "AND NOT EXISTS (SELECT p.id FROM ComicPage p WHERE p.comicId = c.id) ORDER BY c.id")
+    List<Long> findIdsWithoutPageMetadata();
+
     // 热门和最新
     List<Comic> findTop10ByOrderByViewCountDesc();
     List<Comic> findTop10ByOrderByCreatedAtDesc();
@@ -38,27 +111,11 @@ public interface ComicRepository extends JpaRepository<Comic, Long> {
     @Query("SELECT DISTINCT c FROM Comic c JOIN c.tags t WHERE LOWER(t.name) LIKE LOWER(CONCAT('%', :tagName, '%'))")
     Page<Comic> findByTagName(@Param("tagName") String tagName, Pageable pageable);
 
-    // 综合搜索
-    @Query("SELECT DISTINCT c FROM Comic c " +
-            "LEFT JOIN c.tags t " +
-            "WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(c.author) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(c.description) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(t.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    List<Comic> searchComics(@Param("keyword") String keyword);
-
-    @Query("SELECT DISTINCT c FROM Comic c " +
-            "LEFT JOIN c.tags t " +
-            "WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(c.author) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(c.description) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "OR LOWER(t.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<Comic> searchComics(@Param("keyword") String keyword, Pageable pageable);
-
     // 统计查询
     long countByUserId(Long userId);
 
-    // 热门标签查询
-    @Query("SELECT t.name, COUNT(c) as count FROM Comic c JOIN c.tags t GROUP BY t.name ORDER BY count DESC")
-    List<Object[]> findPopularTags(@Param("limit") int limit);
+    // 用户的漫画数量和总浏览量，一次聚合完成
+    @Query("SELECT new wtf.alexhan.thousandlines.dto.UserComicStats(COUNT(c), SUM(c.viewCount)) " +
+            "FROM Comic c WHERE c.user.id = :userId")
+    UserComicStats getUserStats(@Param("userId") Long userId);
 }
\ No newline at end of file
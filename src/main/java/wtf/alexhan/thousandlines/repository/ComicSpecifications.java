@@ -0,0 +1,56 @@
+package wtf.alexhan.thousandlines.repository;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.Tag;
+
+import java.util.Locale;
+
+/**
+ * 漫画高级搜索的查询条件，组合后由数据库一次完成过滤和分页
+ */
+public final class ComicSpecifications {
+
+    private ComicSpecifications() {
+    }
+
+    /**
+     * 标题包含（忽略大小写）
+     */
+    public static Specification<Comic> titleContains(String title) {
+        return (root, query, cb) -> cb.like(cb.lower(root.get("title")), containsPattern(title), '\\');
+    }
+
+    /**
+     * 作者包含（忽略大小写）
+     */
+    public static Specification<Comic> authorContains(String author) {
+        return (root, query, cb) -> cb.like(cb.lower(root.get("author")), containsPattern(author), '\\');
+    }
+
+    /**
+     * 存在名称包含指定文本的标签；用 EXISTS 子查询避免 JOIN 产生重复行
+     */
+    public static Specification<Comic> hasTagContaining(String tagName) {
+        return (root, query, cb) -> {
+            Subquery<Long> subquery = query.subquery(Long.class);
+            Root<Comic> comic = subquery.from(Comic.class);
+            Join<Comic, Tag> tag = comic.join("tags");
+            subquery.select(comic.get("id"))
+                    .where(cb.equal(comic.get("id"), root.get("id")),
+                            cb.like(cb.lower(tag.get("name")), containsPattern(tagName), '\\'));
+            return cb.exists(subquery);
+        };
+    }
+
+    private static String containsPattern(String text) {
+        String escaped = text.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,40 @@
+package wtf.alexhan.thousandlines.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.StoredBlob;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // 新内容插入一行，已存在则引用数加一；等待的行锁随删除释放时，有的数据库不再插入而返回 0
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO stored_blobs (blob_key, size, ref_count, created_at) " +
+            "VALUES (:blobKey, :size, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int acquire(@Param("blobKey") String blobKey, @Param("size") long size);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.blobKey = :blobKey")
+    int release(@Param("blobKey") String blobKey);
+
+    // 删除文件前锁住这一行，同一内容的 acquire 会等到删除完成
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StoredBlob b WHERE b.blobKey = :blobKey")
+    Optional<StoredBlob> findForUpdate(@Param("blobKey") String blobKey);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.blobKey = :blobKey AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("blobKey") String blobKey);
+}
@@ -0,0 +1,33 @@
+package wtf.alexhan.thousandlines.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.TagUsage;
+
+@Repository
+public interface TagUsageRepository extends JpaRepository<TagUsage, Long> {
+
+    // 标签第一次被使用时插入一行，否则计数加一
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO tag_usage (tag_id, tag_name, comic_count) VALUES (:tagId, :tagName, 1) " +
+            "ON DUPLICATE KEY UPDATE comic_count = comic_count + 1", nativeQuery = true)
+    void increment(@Param("tagId") Long tagId, @Param("tagName") String tagName);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TagUsage u SET u.comicCount = u.comicCount - 1 WHERE u.tagId = :tagId AND u.comicCount > 0")
+    int decrement(@Param("tagId") Long tagId);
+
+    // 从漫画-标签关联表全量重算（仅在计数表为空时使用，例如首次部署）
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO tag_usage (tag_id, tag_name, comic_count) " +
+            "SELECT t.id, t.name, COUNT(*) FROM comic_tags ct JOIN tags t ON t.id = ct.tag_id " +
+            "GROUP BY t.id, t.name", nativeQuery = true)
+    int rebuildFromComicTags();
+}
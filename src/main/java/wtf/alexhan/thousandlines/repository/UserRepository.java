@@ -2,7 +2,11 @@ package wtf.alexhan.thousandlines.repository;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import wtf.alexhan.thousandlines.model.User;
 
 import java.util.Optional;
@@ -15,4 +19,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
 
+    // 替换密码哈希；带上旧哈希作为条件，期间密码被修改过则不覆盖
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int replacePasswordHash(@Param("id") Long id, @Param("oldPassword") String oldPassword,
+                            @Param("newPassword") String newPassword);
+
 }
@@ -0,0 +1,43 @@
+package wtf.alexhan.thousandlines.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 文件内容存储：按内容哈希寻址，相同内容只存一份，通过引用计数管理生命周期
+ */
+public interface BlobStore {
+
+    /**
+     * 保存内容并增加一次引用
+     *
+     * @return 内容键（sha256 + 扩展名）
+     */
+    String put(InputStream content, String extension) throws IOException;
+
+    /**
+     * 内容键对应的路径，相对于上传根目录，可直接用于 /uploads/ 下的访问地址
+     */
+    String relativePath(String key);
+
+    /**
+     * 从相对路径中解析出内容键，不是内容寻址路径时返回 null
+     */
+    String keyOf(String relativePath);
+
+    /**
+     * 内容键对应的本地文件
+     */
+    Path resolve(String key);
+
+    /**
+     * 让目标位置指向已保存的内容（硬链接，不支持时复制），不改变引用数
+     */
+    void linkTo(String key, Path target) throws IOException;
+
+    /**
+     * 释放一次引用，引用归零时删除内容
+     */
+    void release(String key) throws IOException;
+}
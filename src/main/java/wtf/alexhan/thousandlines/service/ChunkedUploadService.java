@@ -0,0 +1,401 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import wtf.alexhan.thousandlines.dto.ChunkedUploadStatus;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.model.Comic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 可续传的分块上传（与 tus 协议类似）：先创建上传会话并声明每个文件的大小，再按偏移量分块追加，
+ * 全部接收完后交给 ComicService.uploadComic 保存；连接中断时客户端查询已接收的字节数后继续上传
+ *
+ * 每个会话是暂存目录下的一个子目录：upload.properties 保存元数据，{序号}.part 保存已接收的内容，
+ * 已接收字节数就是 .part 文件的大小。每次追加都会更新目录的修改时间，
+ * 超过 session-ttl 没有活动的会话由定时任务删除
+ */
+@Service
+public class ChunkedUploadService {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final String METADATA_FILE = "upload.properties";
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ComicService comicService;
+    private final Path stagingRoot;
+    private final Duration sessionTtl;
+    private final long maxFileBytes;
+    private final int maxPages;
+
+    // 上传ID -> 会话锁
+    private final Map<String, UploadLock> locks = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(ComicService comicService,
+                                @Value("${app.upload.staging-dir:upload-staging}") String stagingDir,
+                                @Value("${app.upload.session-ttl:24h}") Duration sessionTtl,
+                                @Value("${app.upload.max-file-bytes:104857600}") long maxFileBytes,
+                                @Value("${app.upload.max-pages:2000}") int maxPages) throws IOException {
+        this.comicService = comicService;
+        this.stagingRoot = Paths.get(stagingDir).toAbsolutePath().normalize();
+        this.sessionTtl = sessionTtl;
+        this.maxFileBytes = maxFileBytes;
+        this.maxPages = maxPages;
+        Files.createDirectories(stagingRoot);
+    }
+
+    /**
+     * 创建上传会话，声明封面和每一页的文件名与大小
+     */
+    public ChunkedUploadStatus create(SessionUser user, UploadComicRequest metadata,
+                                      String coverName, long coverSize,
+                                      List<String> pageNames, List<Long> pageSizes) throws IOException {
+        if (metadata.getTitle() == null || metadata.getTitle().isBlank()) {
+            throw new IllegalArgumentException("标题不能为空");
+        }
+        if (pageNames == null || pageNames.isEmpty()) {
+            throw new IllegalArgumentException("请至少上传一页漫画");
+        }
+        if (pageSizes == null || pageSizes.size() != pageNames.size()) {
+            throw new IllegalArgumentException("页面文件名和大小的数量不一致");
+        }
+        if (pageNames.size() > maxPages) {
+            throw new IllegalArgumentException("页数超过上限 " + maxPages);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        names.add(coverName);
+        lengths.add(coverSize);
+        names.addAll(pageNames);
+        lengths.addAll(pageSizes);
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i) == null || names.get(i).isBlank()) {
+                throw new IllegalArgumentException("文件名不能为空");
+            }
+            if (lengths.get(i) <= 0 || lengths.get(i) > maxFileBytes) {
+                throw new IllegalArgumentException("文件大小必须在 1 到 " + maxFileBytes + " 字节之间: " + names.get(i));
+            }
+        }
+
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path directory = stagingRoot.resolve(id);
+        Files.createDirectories(directory);
+
+        Properties properties = new Properties();
+        properties.setProperty("owner", String.valueOf(user.id()));
+        properties.setProperty("title", metadata.getTitle());
+        setIfPresent(properties, "author", metadata.getAuthor());
+        setIfPresent(properties, "description", metadata.getDescription());
+        if (metadata.getTags() != null) {
+            properties.setProperty("tags", String.join(",", metadata.getTags()));
+        }
+        properties.setProperty("files", String.valueOf(names.size()));
+        for (int i = 0; i < names.size(); i++) {
+            properties.setProperty("file." + i + ".name", names.get(i));
+            properties.setProperty("file." + i + ".length", String.valueOf(lengths.get(i)));
+        }
+        // 先写临时文件再原子替换，读到的元数据总是完整的
+        Path temp = directory.resolve(METADATA_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, directory.resolve(METADATA_FILE), StandardCopyOption.ATOMIC_MOVE);
+
+        return status(load(id, user));
+    }
+
+    /**
+     * 查询会话状态（每个文件已接收的字节数）
+     */
+    public ChunkedUploadStatus getStatus(String id, SessionUser user) throws IOException {
+        return status(load(id, user));
+    }
+
+    /**
+     * 从 offset 处追加一块内容，offset 必须等于已接收的字节数
+     * 请求体读到一半连接断开时，已写入的部分会保留，客户端查询偏移量后续传
+     *
+     * @return 追加后已接收的字节数
+     */
+    public long append(String id, SessionUser user, int index, long offset, InputStream body) throws IOException {
+        UploadLock lock = lockFor(id);
+        if (!lock.session.readLock().tryLock()) {
+            throw new IllegalStateException("上传正在完成中");
+        }
+        try {
+            // 持锁后再读取，会话可能刚被完成或放弃
+            Staged staged = load(id, user);
+            long length = staged.length(index);
+            Path part = staged.part(index);
+
+            ReentrantLock fileLock = lock.files.computeIfAbsent(index, key -> new ReentrantLock());
+            if (!fileLock.tryLock()) {
+                // 同一个文件已有分块正在写入
+                throw new UploadOffsetConflictException(sizeOf(part));
+            }
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long position = channel.size();
+                if (offset != position) {
+                    throw new UploadOffsetConflictException(position);
+                }
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = body.read(buffer)) != -1) {
+                        if (position + read > length) {
+                            throw new IllegalArgumentException("超出文件声明的大小: " + staged.name(index));
+                        }
+                        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                        while (chunk.hasRemaining()) {
+                            position += channel.write(chunk, position);
+                        }
+                    }
+                    if (position == length) {
+                        channel.force(true);
+                    }
+                    return position;
+                } finally {
+                    // 连接中断时已写入的部分也算活动，有效期从这里重新计算
+                    Files.setLastModifiedTime(staged.directory(), FileTime.from(Instant.now()));
+                }
+            } finally {
+                fileLock.unlock();
+            }
+        } finally {
+            lock.session.readLock().unlock();
+        }
+    }
+
+    /**
+     * 全部文件接收完成后创建漫画，成功后删除暂存目录
+     */
+    public Comic complete(String id, SessionUser user) throws IOException {
+        UploadLock lock = lockFor(id);
+        if (!lock.session.writeLock().tryLock()) {
+            throw new IllegalStateException("上传正在进行中或正在完成");
+        }
+        try {
+            Staged staged = load(id, user);
+            for (int i = 0; i < staged.names().length; i++) {
+                if (sizeOf(staged.part(i)) != staged.length(i)) {
+                    throw new IllegalArgumentException("文件尚未上传完成: " + staged.name(i));
+                }
+            }
+
+            UploadComicRequest request = new UploadComicRequest();
+            request.setTitle(staged.properties().getProperty("title"));
+            request.setAuthor(staged.properties().getProperty("author"));
+            request.setDescription(staged.properties().getProperty("description"));
+            String tags = staged.properties().getProperty("tags");
+            if (tags != null && !tags.isBlank()) {
+                request.setTags(Arrays.asList(tags.split(",")));
+            }
+            request.setCoverImage(new StagedMultipartFile("coverImage", staged.name(0), staged.part(0)));
+            MultipartFile[] pages = new MultipartFile[staged.names().length - 1];
+            for (int i = 1; i < staged.names().length; i++) {
+                pages[i - 1] = new StagedMultipartFile("pages", staged.name(i), staged.part(i));
+            }
+            request.setPages(pages);
+
+            Comic comic = comicService.uploadComic(request, user);
+            delete(id);
+            return comic;
+        } finally {
+            lock.session.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 放弃上传，删除暂存内容
+     */
+    public void abort(String id, SessionUser user) throws IOException {
+        UploadLock lock = lockFor(id);
+        if (!lock.session.writeLock().tryLock()) {
+            throw new IllegalStateException("上传正在进行中或正在完成");
+        }
+        try {
+            load(id, user);
+            delete(id);
+        } finally {
+            lock.session.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 定时清理超过有效期没有活动的会话
+     */
+    @Scheduled(fixedDelayString = "${app.upload.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(stagingRoot)) {
+            for (Path directory : sessions) {
+                String id = directory.getFileName().toString();
+                if (!UPLOAD_ID.matcher(id).matches() || !expiresAt(directory).isBefore(Instant.now())) {
+                    continue;
+                }
+                UploadLock lock = lockFor(id);
+                if (!lock.session.writeLock().tryLock()) {
+                    // 正在使用，说明还有活动
+                    continue;
+                }
+                try {
+                    if (expiresAt(directory).isBefore(Instant.now())) {
+                        delete(id);
+                        purged++;
+                    }
+                } finally {
+                    lock.session.writeLock().unlock();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理上传暂存区失败", e);
+        }
+        if (purged > 0) {
+            log.info("已清理 {} 个过期的上传会话", purged);
+        }
+    }
+
+    private Staged load(String id, SessionUser user) throws IOException {
+        if (id == null || !UPLOAD_ID.matcher(id).matches()) {
+            throw new NoSuchElementException("上传会话不存在");
+        }
+        Path directory = stagingRoot.resolve(id);
+        Path metadata = directory.resolve(METADATA_FILE);
+        if (!Files.exists(metadata) || expiresAt(directory).isBefore(Instant.now())) {
+            throw new NoSuchElementException("上传会话不存在或已过期");
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(metadata, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        // 只有创建者能访问，其他用户视为不存在
+        if (!String.valueOf(user.id()).equals(properties.getProperty("owner"))) {
+            throw new NoSuchElementException("上传会话不存在");
+        }
+
+        int count = Integer.parseInt(properties.getProperty("files"));
+        String[] names = new String[count];
+        long[] lengths = new long[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = properties.getProperty("file." + i + ".name");
+            lengths[i] = Long.parseLong(properties.getProperty("file." + i + ".length"));
+        }
+        return new Staged(id, directory, properties, names, lengths);
+    }
+
+    private ChunkedUploadStatus status(Staged staged) throws IOException {
+        List<ChunkedUploadStatus.FileStatus> files = new ArrayList<>(staged.names().length);
+        for (int i = 0; i < staged.names().length; i++) {
+            files.add(new ChunkedUploadStatus.FileStatus(i, staged.name(i), staged.length(i), sizeOf(staged.part(i))));
+        }
+        return new ChunkedUploadStatus(staged.id(), files, expiresAt(staged.directory()));
+    }
+
+    /**
+     * 有效期从最后一次写入算起：创建时写入元数据、每次追加都会更新目录的修改时间
+     */
+    private Instant expiresAt(Path directory) throws IOException {
+        return Files.getLastModifiedTime(directory).toInstant().plus(sessionTtl);
+    }
+
+    /**
+     * 只为存在的会话创建锁，随意构造的上传ID不会在 locks 中留下条目
+     */
+    private UploadLock lockFor(String id) {
+        if (id == null || !UPLOAD_ID.matcher(id).matches() || !Files.isDirectory(stagingRoot.resolve(id))) {
+            throw new NoSuchElementException("上传会话不存在");
+        }
+        return locks.computeIfAbsent(id, key -> new UploadLock());
+    }
+
+    private void delete(String id) throws IOException {
+        Path directory = stagingRoot.resolve(id);
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted((a, b) -> -a.compareTo(b))::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        locks.remove(id);
+    }
+
+    private static long sizeOf(Path part) throws IOException {
+        return Files.exists(part) ? Files.size(part) : 0;
+    }
+
+    private static void setIfPresent(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    /**
+     * 会话锁：追加分块持读锁，不同文件可以并行上传；完成、放弃和过期清理持写锁，期间不会有分块写入。
+     * 同一个文件的分块再由文件锁互斥
+     */
+    private static final class UploadLock {
+        private final ReentrantReadWriteLock session = new ReentrantReadWriteLock();
+        private final Map<Integer, ReentrantLock> files = new ConcurrentHashMap<>();
+    }
+
+    private record Staged(String id, Path directory, Properties properties, String[] names, long[] lengths) {
+        String name(int index) {
+            checkIndex(index);
+            return names[index];
+        }
+
+        long length(int index) {
+            checkIndex(index);
+            return lengths[index];
+        }
+
+        Path part(int index) {
+            checkIndex(index);
+            return directory.resolve(index + PART_SUFFIX);
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= names.length) {
+                throw new NoSuchElementException("文件序号不存在: " + index);
+            }
+        }
+    }
+}
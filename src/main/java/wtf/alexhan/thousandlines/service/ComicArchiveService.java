@@ -0,0 +1,226 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.model.Comic;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * ZIP/CBZ 归档导入：顺序读取归档条目，每页直接流式写入 BlobStore（不先解压到临时目录），
+ * 读完后按文件名自然排序组装成漫画目录，标题、作者、简介和标签取自 ComicInfo.xml
+ */
+@Service
+public class ComicArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(ComicArchiveService.class);
+
+    private static final String COMIC_INFO = "ComicInfo.xml";
+    private static final int MAX_COMIC_INFO_BYTES = 1024 * 1024;
+
+    // 文件名自然排序：数字部分按数值比较，2.jpg 排在 10.jpg 前面
+    static final Comparator<String> NATURAL_ORDER = ComicArchiveService::compareNatural;
+
+    private final StorageService storageService;
+    private final ComicService comicService;
+    private final int maxPages;
+    private final long maxPageBytes;
+
+    public ComicArchiveService(StorageService storageService, ComicService comicService,
+                               @Value("${app.import.max-pages:2000}") int maxPages,
+                               @Value("${app.import.max-page-bytes:52428800}") long maxPageBytes) {
+        this.storageService = storageService;
+        this.comicService = comicService;
+        this.maxPages = maxPages;
+        this.maxPageBytes = maxPageBytes;
+    }
+
+    /**
+     * 导入一个归档，读完后关闭输入流
+     *
+     * @param fallbackTitle ComicInfo.xml 中没有标题时使用（通常是归档文件名）
+     */
+    public Comic importArchive(InputStream archive, String fallbackTitle, SessionUser owner) throws IOException {
+        List<ArchivePage> pages = new ArrayList<>();
+        ComicInfo info = null;
+        int skipped = 0;
+        try (ZipInputStream zip = new ZipInputStream(archive, StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String fileName = name.substring(name.lastIndexOf('/') + 1);
+                if (entry.isDirectory() || name.startsWith("__MACOSX/") || fileName.startsWith(".")) {
+                    continue;
+                }
+                if (fileName.equalsIgnoreCase(COMIC_INFO)) {
+                    info = ComicInfo.parse(readComicInfo(zip));
+                } else if (isJpegName(fileName)) {
+                    if (pages.size() >= maxPages) {
+                        throw new IllegalArgumentException("归档页数超过上限 " + maxPages);
+                    }
+                    String key = storageService.storePageContent(new EntryInputStream(zip, maxPageBytes, name), name);
+                    pages.add(new ArchivePage(name, key));
+                } else {
+                    skipped++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            storageService.releasePageContent(keys(pages));
+            throw e;
+        }
+        if (pages.isEmpty()) {
+            throw new IllegalArgumentException("归档中没有 JPG 页面");
+        }
+        if (skipped > 0) {
+            log.info("归档 {} 中有 {} 个非 JPG 文件已跳过", fallbackTitle, skipped);
+        }
+
+        pages.sort(Comparator.comparing(ArchivePage::name, NATURAL_ORDER));
+        List<String> keys = keys(pages);
+        String comicFolder = UUID.randomUUID().toString();
+        int pageCount = storageService.assembleComicPages(keys, comicFolder);
+
+        String coverPath;
+        try {
+            coverPath = storageService.storeCoverFromPage(keys.get(0));
+        } catch (IOException | RuntimeException e) {
+            storageService.deleteFolder(comicFolder);
+            throw e;
+        }
+        return comicService.saveStoredComic(toMetadata(info, fallbackTitle), owner, coverPath, comicFolder, pageCount);
+    }
+
+    private UploadComicRequest toMetadata(ComicInfo info, String fallbackTitle) {
+        UploadComicRequest metadata = new UploadComicRequest();
+        String title = info != null ? info.displayTitle() : null;
+        if (title == null) {
+            title = fallbackTitle != null && !fallbackTitle.isBlank() ? fallbackTitle.trim() : "未命名漫画";
+        }
+        metadata.setTitle(title);
+        if (info != null) {
+            metadata.setAuthor(info.writer());
+            metadata.setDescription(info.summary());
+            metadata.setTags(info.tags());
+        }
+        return metadata;
+    }
+
+    private static byte[] readComicInfo(InputStream zip) throws IOException {
+        byte[] xml = zip.readNBytes(MAX_COMIC_INFO_BYTES + 1);
+        if (xml.length > MAX_COMIC_INFO_BYTES) {
+            throw new IllegalArgumentException("ComicInfo.xml 过大");
+        }
+        return xml;
+    }
+
+    private static boolean isJpegName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    private static List<String> keys(List<ArchivePage> pages) {
+        List<String> keys = new ArrayList<>(pages.size());
+        for (ArchivePage page : pages) {
+            keys.add(page.key());
+        }
+        return keys;
+    }
+
+    private static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                int startA = i;
+                int startB = j;
+                while (i < a.length() && Character.isDigit(a.charAt(i))) {
+                    i++;
+                }
+                while (j < b.length() && Character.isDigit(b.charAt(j))) {
+                    j++;
+                }
+                // 去掉前导零后先比长度再逐位比较，不会溢出
+                String numA = a.substring(startA, i).replaceFirst("^0+(?=.)", "");
+                String numB = b.substring(startB, j).replaceFirst("^0+(?=.)", "");
+                int result = numA.length() != numB.length()
+                        ? Integer.compare(numA.length(), numB.length())
+                        : numA.compareTo(numB);
+                if (result != 0) {
+                    return result;
+                }
+            } else {
+                int result = Character.compare(Character.toLowerCase(ca), Character.toLowerCase(cb));
+                if (result != 0) {
+                    return result;
+                }
+                i++;
+                j++;
+            }
+        }
+        int result = Integer.compare(a.length() - i, b.length() - j);
+        return result != 0 ? result : a.compareTo(b);
+    }
+
+    private record ArchivePage(String name, String key) {
+    }
+
+    /**
+     * 当前条目的输入流：限制单页大小（防止压缩炸弹），关闭时不关闭整个归档
+     */
+    private static class EntryInputStream extends FilterInputStream {
+        private final long limit;
+        private final String name;
+        private long read;
+
+        EntryInputStream(InputStream zip, long limit, String name) {
+            super(zip);
+            this.limit = limit;
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // 由外层的 ZipInputStream 负责关闭
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > limit) {
+                throw new IllegalArgumentException("页面过大: " + name);
+            }
+        }
+    }
+}
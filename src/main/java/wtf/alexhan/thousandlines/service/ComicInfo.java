@@ -0,0 +1,76 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CBZ 归档中的 ComicInfo.xml（ComicRack 格式），只读取导入需要的字段
+ */
+public record ComicInfo(String title, String series, String number, String writer, String summary,
+                        List<String> tags) {
+
+    /**
+     * 解析 ComicInfo.xml；禁用 DTD 和外部实体
+     */
+    public static ComicInfo parse(byte[] xml) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            factory.setXIncludeAware(false);
+            document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalArgumentException("ComicInfo.xml 格式错误: " + e.getMessage());
+        }
+
+        // Genre 和 Tags 都是逗号分隔的列表，合并为标签
+        List<String> tags = new ArrayList<>();
+        for (String field : new String[]{"Genre", "Tags"}) {
+            String value = text(document, field);
+            if (value != null) {
+                for (String tag : value.split("[,，]")) {
+                    if (!tag.isBlank()) {
+                        tags.add(tag.trim());
+                    }
+                }
+            }
+        }
+        return new ComicInfo(text(document, "Title"), text(document, "Series"), text(document, "Number"),
+                text(document, "Writer"), text(document, "Summary"), tags);
+    }
+
+    /**
+     * 显示用的标题：Title，没有时用 Series + 话数
+     */
+    public String displayTitle() {
+        if (title != null) {
+            return title;
+        }
+        if (series != null) {
+            return number != null ? series + " " + number : series;
+        }
+        return null;
+    }
+
+    private static String text(Document document, String element) {
+        NodeList nodes = document.getDocumentElement().getElementsByTagName(element);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        Node node = nodes.item(0);
+        String value = node.getTextContent();
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
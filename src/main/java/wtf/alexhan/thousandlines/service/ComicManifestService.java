@@ -0,0 +1,222 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import wtf.alexhan.thousandlines.config.CacheNames;
+import wtf.alexhan.thousandlines.dto.PageManifest;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.ComicPage;
+import wtf.alexhan.thousandlines.repository.ComicPageRepository;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 阅读器的页面清单：页面的字节数、尺寸和内容哈希在入库时由后台任务计算一次并保存，
+ * 之前上传的漫画由 ComicManifestBackfillRunner 排队补算；清单本身按漫画缓存
+ */
+@Service
+public class ComicManifestService {
+    private static final Logger log = LoggerFactory.getLogger(ComicManifestService.class);
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final int VERSION_LENGTH = 16;
+
+    private final ComicRepository comicRepository;
+    private final ComicPageRepository comicPageRepository;
+    private final StorageService storageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final TransactionTemplate transactionTemplate;
+
+    public ComicManifestService(ComicRepository comicRepository, ComicPageRepository comicPageRepository,
+                                StorageService storageService, ImageDerivativeService imageDerivativeService,
+                                TransactionTemplate transactionTemplate) {
+        this.comicRepository = comicRepository;
+        this.comicPageRepository = comicPageRepository;
+        this.storageService = storageService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 漫画的页面清单，漫画不存在时返回 null
+     */
+    @Cacheable(cacheNames = CacheNames.COMIC_MANIFESTS, key = "#comicId", unless = "#result == null")
+    public PageManifest getManifest(Long comicId) throws IOException {
+        Comic comic = comicRepository.findById(comicId).orElse(null);
+        if (comic == null) {
+            return null;
+        }
+        List<ComicPage> pages = comicPageRepository.findByComicIdOrderByPageNumber(comicId);
+        if (pages.isEmpty() && comic.getFolderPath() != null) {
+            pages = savePages(comicId, readPages(comic));
+        }
+        return toManifest(comic, pages);
+    }
+
+    /**
+     * 已保存的页面清单，不现算：漫画不存在或页面元数据还没计算时返回 null
+     */
+    @Cacheable(cacheNames = CacheNames.COMIC_MANIFESTS, key = "#comicId", unless = "#result == null")
+    public PageManifest findManifest(Long comicId) {
+        Comic comic = comicRepository.findById(comicId).orElse(null);
+        if (comic == null) {
+            return null;
+        }
+        List<ComicPage> pages = comicPageRepository.findByComicIdOrderByPageNumber(comicId);
+        if (pages.isEmpty() && comic.getFolderPath() != null) {
+            return null;
+        }
+        return toManifest(comic, pages);
+    }
+
+    /**
+     * 重新计算并保存页面元数据（入库后由后台任务调用，可重复执行）
+     */
+    @CacheEvict(cacheNames = CacheNames.COMIC_MANIFESTS, key = "#comicId")
+    public void refresh(Long comicId) throws IOException {
+        Comic comic = comicRepository.findById(comicId).orElse(null);
+        if (comic == null) {
+            // 漫画已删除
+            return;
+        }
+        savePages(comicId, readPages(comic));
+    }
+
+    /**
+     * 删除漫画的页面元数据（漫画删除时在同一事务中调用，缓存在提交后清理）
+     */
+    public void discard(Long comicId) {
+        comicPageRepository.deleteByComicId(comicId);
+    }
+
+    /**
+     * 读取每页的元数据：只解析图片头取尺寸；内容哈希优先用 .blobs 清单中的内容键，没有时现算
+     */
+    private List<ComicPage> readPages(Comic comic) throws IOException {
+        String folder = comic.getFolderPath();
+        Map<String, String> keys = storageService.comicPageKeys(folder);
+        List<ComicPage> pages = new ArrayList<>();
+        for (String name : storageService.comicPageNames(folder)) {
+            ComicPage page = new ComicPage();
+            page.setComicId(comic.getId());
+            page.setPageNumber(Integer.parseInt(name.substring(0, name.indexOf('.'))));
+            page.setBytes(storageService.comicFileSize(folder, name));
+            readDimensions(folder, name, page);
+            // 内容键为 sha256 + 扩展名
+            String key = keys.get(name);
+            page.setSha256(key != null && key.indexOf('.') > 0 ? key.substring(0, key.indexOf('.')) : sha256(folder, name));
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private List<ComicPage> savePages(Long comicId, List<ComicPage> pages) {
+        try {
+            return transactionTemplate.execute(status -> {
+                comicPageRepository.deleteByComicId(comicId);
+                return comicPageRepository.saveAll(pages);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // 并发补算同一部漫画，以先保存的为准
+            log.debug("漫画 {} 的页面元数据已由其他请求保存", comicId);
+            return comicPageRepository.findByComicIdOrderByPageNumber(comicId);
+        }
+    }
+
+    private void readDimensions(String folder, String name, ComicPage page) throws IOException {
+        InputStream content = storageService.openComicFile(folder, name);
+        if (content == null) {
+            return;
+        }
+        try (content; ImageInputStream in = new MemoryCacheImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                page.setWidth(reader.getWidth(0));
+                page.setHeight(reader.getHeight(0));
+            } catch (IOException e) {
+                log.warn("无法读取页面尺寸 {}/{}", folder, name);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private String sha256(String folder, String name) throws IOException {
+        InputStream content = storageService.openComicFile(folder, name);
+        if (content == null) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        try (content) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private PageManifest toManifest(Comic comic, List<ComicPage> pages) {
+        int[] widths = imageDerivativeService.getWidths();
+        String base = "/uploads/comics/" + comic.getFolderPath() + "/";
+        MessageDigest version = newDigest();
+        version.update(String.valueOf(comic.getFolderPath()).getBytes(StandardCharsets.UTF_8));
+        for (int width : widths) {
+            version.update((byte) 0);
+            version.update(Integer.toString(width).getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<PageManifest.Page> result = new ArrayList<>(pages.size());
+        for (ComicPage page : pages) {
+            List<PageManifest.Variant> variants = new ArrayList<>();
+            for (int width : widths) {
+                // 比原图宽的尺寸不会生成，直接用原图
+                if (width < page.getWidth()) {
+                    variants.add(new PageManifest.Variant(width,
+                            imageDerivativeService.scaledHeight(page.getWidth(), page.getHeight(), width),
+                            base + page.getPageNumber() + "@" + width + ".jpg"));
+                }
+            }
+            result.add(new PageManifest.Page(page.getPageNumber(), base + page.getPageNumber() + ".jpg",
+                    page.getBytes(), page.getWidth(), page.getHeight(), page.getSha256(), List.copyOf(variants)));
+            version.update((byte) 0);
+            version.update((page.getPageNumber() + ":" + page.getSha256() + ":" + page.getWidth() + "x" + page.getHeight())
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        String hex = HexFormat.of().formatHex(version.digest()).substring(0, VERSION_LENGTH);
+        return new PageManifest(comic.getId(), hex, List.copyOf(result));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package wtf.alexhan.thousandlines.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 漫画打包文件：把一个漫画目录（页面、衍生图、.blobs 清单）合并为单个只读文件，
+ * 减少 inode 数量，删除时只需删除一个文件，读取时不用逐页 open/stat
+ *
+ * 格式（大端）：
+ * <pre>
+ * "TLPK" | 版本 int | 文件数 int
+ * 每个文件：名称长度 short | 名称 UTF-8 | 偏移 long | 长度 long
+ * 文件内容依次排列，偏移为相对于打包文件开头的绝对位置
+ * </pre>
+ * 打开时整体映射到内存，读取页面返回映射区域的切片
+ */
+public final class ComicPack {
+    public static final String EXTENSION = ".pack";
+
+    private static final int MAGIC = 0x544C504B; // "TLPK"
+    private static final int VERSION = 1;
+    private static final int MAX_ENTRIES = 100_000;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final long lastModified;
+    // 不超过 2GB 的打包文件整体映射；更大的文件每次按条目单独映射
+    private final ByteBuffer mapped;
+    private final Map<String, Entry> entries;
+    private final List<String> names;
+
+    /**
+     * 打包文件中的一个文件
+     */
+    public record Entry(String name, long offset, long length) {
+    }
+
+    private ComicPack(Path file, long lastModified, ByteBuffer mapped, Map<String, Entry> entries, List<String> names) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.mapped = mapped;
+        this.entries = entries;
+        this.names = names;
+    }
+
+    /**
+     * 映射打包文件并读取索引
+     */
+    public static ComicPack open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            ByteBuffer mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+            ByteBuffer header = mapped != null ? mapped.duplicate() : readHeader(channel);
+
+            try {
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("不是漫画打包文件: " + file);
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("不支持的打包文件版本 " + version + ": " + file);
+                }
+                int count = header.getInt();
+                if (count < 0 || count > MAX_ENTRIES) {
+                    throw new IOException("打包文件索引损坏: " + file);
+                }
+                Map<String, Entry> entries = new HashMap<>(count * 2);
+                List<String> names = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[header.getShort() & 0xFFFF];
+                    header.get(name);
+                    Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), header.getLong(), header.getLong());
+                    if (entry.offset() < 0 || entry.length() < 0 || entry.offset() + entry.length() > size) {
+                        throw new IOException("打包文件索引损坏: " + file);
+                    }
+                    entries.put(entry.name(), entry);
+                    names.add(entry.name());
+                }
+                return new ComicPack(file, lastModified, mapped, entries, Collections.unmodifiableList(names));
+            } catch (BufferUnderflowException e) {
+                throw new IOException("打包文件索引损坏: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * 超过 2GB 的打包文件只映射索引部分
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(12);
+        channel.read(prefix, 0);
+        prefix.flip();
+        int count = prefix.remaining() == 12 ? Math.max(0, Math.min(prefix.getInt(8), MAX_ENTRIES)) : 0;
+        // 名称最长 64KB，按实际条目数估算索引大小的上限
+        long limit = Math.min(channel.size(), 12 + (long) count * (2 + 0xFFFF + 16));
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, limit);
+    }
+
+    /**
+     * 把目录中的文件写成打包文件：先写临时文件并 fsync，再原子地替换目标
+     *
+     * @param files 要打包的文件（名称为打包后的文件名），按给定顺序排列
+     */
+    public static void write(Map<String, Path> files, Path target) throws IOException {
+        List<Entry> index = new ArrayList<>(files.size());
+        long offset = 12;
+        for (String name : files.keySet()) {
+            offset += 2 + name.getBytes(StandardCharsets.UTF_8).length + 16;
+        }
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            long length = Files.size(file.getValue());
+            index.add(new Entry(file.getKey(), offset, length));
+            offset += length;
+        }
+
+        Path temp = Files.createTempFile(target.getParent(), ".pack-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, COPY_BUFFER_SIZE));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(index.size());
+                for (Entry entry : index) {
+                    byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+                    data.writeShort(name.length);
+                    data.write(name);
+                    data.writeLong(entry.offset());
+                    data.writeLong(entry.length());
+                }
+                data.flush();
+
+                for (Entry entry : index) {
+                    try (FileChannel source = FileChannel.open(files.get(entry.name()), StandardOpenOption.READ)) {
+                        long position = 0;
+                        while (position < entry.length()) {
+                            long copied = source.transferTo(position, entry.length() - position, channel);
+                            if (copied <= 0) {
+                                throw new IOException("打包时文件被修改: " + files.get(entry.name()));
+                            }
+                            position += copied;
+                        }
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 打包时的文件顺序
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    public Entry entry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * 以输入流读取文件内容，不存在时返回 null
+     */
+    public InputStream openStream(String name) throws IOException {
+        ByteBuffer content = slice(name);
+        if (content == null) {
+            return null;
+        }
+        return new InputStream() {
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!content.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, content.remaining());
+                content.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return content.remaining();
+            }
+        };
+    }
+
+    /**
+     * 文件内容的只读切片，不存在时返回 null
+     */
+    public ByteBuffer slice(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (mapped != null) {
+            return mapped.slice((int) entry.offset(), (int) entry.length());
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, entry.offset(), entry.length());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package wtf.alexhan.thousandlines.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 打包漫画的读取入口：uploads/comics/{folder}.pack，已打开（已映射）的打包文件按 LRU 缓存，
+ * 热门漫画翻页时不再有 open/stat 系统调用
+ */
+@Service
+public class ComicPackStore {
+
+    private final Path comicsRoot;
+    private final Cache<String, ComicPack> openPacks;
+
+    public ComicPackStore(@Value("${app.upload-dir}") String uploadDir,
+                          @Value("${app.comic-pack.cache-size:1024}") int cacheSize) {
+        this.comicsRoot = Paths.get(uploadDir, "comics").toAbsolutePath().normalize();
+        this.openPacks = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * 漫画目录对应的打包文件路径
+     */
+    public Path packFile(String folder) {
+        return comicsRoot.resolve(folder + ComicPack.EXTENSION);
+    }
+
+    /**
+     * 只查已打开的打包文件，不访问磁盘
+     */
+    public ComicPack cached(String folder) {
+        return openPacks.getIfPresent(folder);
+    }
+
+    /**
+     * 打开漫画的打包文件，没有打包时返回 null
+     */
+    public ComicPack open(String folder) throws IOException {
+        ComicPack pack = openPacks.getIfPresent(folder);
+        if (pack != null) {
+            return pack;
+        }
+        Path file = packFile(folder);
+        if (!isValidFolder(folder) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        // 并发打开同一个文件时各自映射，最后放入缓存的胜出，不持有锁做 IO
+        pack = ComicPack.open(file);
+        ComicPack existing = openPacks.asMap().putIfAbsent(folder, pack);
+        return existing != null ? existing : pack;
+    }
+
+    /**
+     * 打包文件被替换或删除后调用；映射区域在没有引用后由 GC 回收
+     */
+    public void invalidate(String folder) {
+        openPacks.invalidate(folder);
+    }
+
+    private boolean isValidFolder(String folder) {
+        return !folder.isEmpty() && !folder.startsWith(".") && folder.indexOf('/') < 0 && folder.indexOf('\\') < 0;
+    }
+}
@@ -1,147 +1,304 @@
 package wtf.alexhan.thousandlines.service;
 
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import wtf.alexhan.thousandlines.config.CacheNames;
+import wtf.alexhan.thousandlines.dto.ComicCard;
+import wtf.alexhan.thousandlines.dto.ComicFeed;
+import wtf.alexhan.thousandlines.dto.SessionUser;
 import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.dto.UserComicStats;
+import wtf.alexhan.thousandlines.event.ComicChangedEvent;
+import wtf.alexhan.thousandlines.job.ComicDerivativesJobHandler;
+import wtf.alexhan.thousandlines.job.ComicManifestJobHandler;
+import wtf.alexhan.thousandlines.job.ComicPageCheckJobHandler;
+import wtf.alexhan.thousandlines.job.JobQueueService;
 import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.ComicStatus;
 import wtf.alexhan.thousandlines.model.Tag;
 import wtf.alexhan.thousandlines.model.User;
-import wtf.alexhan.thousandlines.model.UserRole;
 import wtf.alexhan.thousandlines.repository.ComicRepository;
+import wtf.alexhan.thousandlines.repository.ComicSpecifications;
 import wtf.alexhan.thousandlines.repository.TagRepository;
+import wtf.alexhan.thousandlines.repository.UserRepository;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 @Service
+@Timed("comic.service")
 public class ComicService {
+    private static final Logger log = LoggerFactory.getLogger(ComicService.class);
+
+    public static final String SORT_POPULAR = "popular";
+    public static final String SORT_LATEST = "latest";
+    private static final String CURSOR_SEPARATOR = "|";
+    // 只缓存列表的前几页，更深的页面访问少，不值得占用缓存
+    public static final int CACHED_PAGES = 3;
+    private static final String CACHEABLE_PAGE =
+            "#pageable.pageNumber < T(wtf.alexhan.thousandlines.service.ComicService).CACHED_PAGES";
+
     private final ComicRepository comicRepository;
     private final TagRepository tagRepository;
+    private final UserRepository userRepository;
     private final StorageService storageService;
-
-    public ComicService(ComicRepository comicRepository, TagRepository tagRepository, StorageService storageService) {
+    private final ViewCountService viewCountService;
+    private final SearchService searchService;
+    private final RelatedComicsService relatedComicsService;
+    private final TagUsageService tagUsageService;
+    private final TagDictionaryService tagDictionaryService;
+    private final JobQueueService jobQueueService;
+    private final ComicManifestService comicManifestService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate afterCommitTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DistributionSummary pagesPerUpload;
+
+    public ComicService(ComicRepository comicRepository, TagRepository tagRepository, UserRepository userRepository,
+                        StorageService storageService,
+                        ViewCountService viewCountService, SearchService searchService,
+                        RelatedComicsService relatedComicsService,
+                        TagUsageService tagUsageService, TagDictionaryService tagDictionaryService,
+                        JobQueueService jobQueueService, ComicManifestService comicManifestService,
+                        TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                        MeterRegistry meterRegistry) {
         this.comicRepository = comicRepository;
         this.tagRepository = tagRepository;
+        this.userRepository = userRepository;
         this.storageService = storageService;
+        this.viewCountService = viewCountService;
+        this.searchService = searchService;
+        this.relatedComicsService = relatedComicsService;
+        this.tagUsageService = tagUsageService;
+        this.tagDictionaryService = tagDictionaryService;
+        this.jobQueueService = jobQueueService;
+        this.comicManifestService = comicManifestService;
+        this.transactionTemplate = transactionTemplate;
+        this.afterCommitTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.afterCommitTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.pagesPerUpload = DistributionSummary.builder("comic.upload.pages").baseUnit("pages")
+                .publishPercentiles(0.5, 0.95).register(meterRegistry);
     }
 
     /**
      * 获取所有漫画（不分页）
      */
+    @Transactional(readOnly = true)
     public List<Comic> getAllComics() {
-        return comicRepository.findAll();
+        return withPendingViews(comicRepository.findAll());
     }
 
     /**
-     * 获取所有漫画（分页版）
+     * 获取所有漫画（分页版，列表卡片）
      */
-    public Page<Comic> getAllComics(Pageable pageable) {
-        return comicRepository.findAll(pageable);
+    @Cacheable(cacheNames = CacheNames.COMIC_PAGES, condition = CACHEABLE_PAGE,
+            key = "'all:' + #pageable.pageNumber + ':' + #pageable.pageSize")
+    @Transactional(readOnly = true)
+    public Page<ComicCard> getAllComics(Pageable pageable) {
+        return completeCards(comicRepository.findCards(pageable));
     }
 
     /**
      * 获取热门漫画（按浏览量排序）
      */
+    @Transactional(readOnly = true)
     public List<Comic> getPopularComics() {
-        return comicRepository.findTop10ByOrderByViewCountDesc();
+        return withPendingViews(comicRepository.findTop10ByOrderByViewCountDesc());
     }
 
     /**
-     * 获取热门漫画（分页版）
+     * 获取热门漫画（分页版，列表卡片）
      */
-    public Page<Comic> getPopularComics(Pageable pageable) {
-        return comicRepository.findAllByOrderByViewCountDesc(pageable);
+    @Cacheable(cacheNames = CacheNames.COMIC_PAGES, condition = CACHEABLE_PAGE,
+            key = "'popular:' + #pageable.pageNumber + ':' + #pageable.pageSize")
+    @Transactional(readOnly = true)
+    public Page<ComicCard> getPopularComics(Pageable pageable) {
+        Pageable sorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Order.desc("viewCount"), Sort.Order.desc("id")));
+        return completeCards(comicRepository.findCards(sorted));
     }
 
     /**
      * 获取最新漫画
      */
+    @Transactional(readOnly = true)
     public List<Comic> getLatestComics() {
-        return comicRepository.findTop10ByOrderByCreatedAtDesc();
+        return withPendingViews(comicRepository.findTop10ByOrderByCreatedAtDesc());
     }
 
     /**
-     * 获取最新漫画（分页版）
+     * 获取最新漫画（分页版，列表卡片）
      */
-    public Page<Comic> getLatestComics(Pageable pageable) {
-        return comicRepository.findAllByOrderByCreatedAtDesc(pageable);
+    @Cacheable(cacheNames = CacheNames.COMIC_PAGES, condition = CACHEABLE_PAGE,
+            key = "'latest:' + #pageable.pageNumber + ':' + #pageable.pageSize")
+    @Transactional(readOnly = true)
+    public Page<ComicCard> getLatestComics(Pageable pageable) {
+        Pageable sorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+        return completeCards(comicRepository.findCards(sorted));
+    }
+
+    /**
+     * 热门漫画的游标分页：从游标位置继续往后取，cursor 为空时从头开始
+     */
+    @Transactional(readOnly = true)
+    public ComicFeed getPopularFeed(String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size);
+        List<ComicCard> cards;
+        if (cursor == null || cursor.isEmpty()) {
+            cards = comicRepository.findPopularCards(limit);
+        } else {
+            String[] parts = decodeCursor(cursor);
+            long viewCount;
+            long id;
+            try {
+                viewCount = Long.parseLong(parts[0]);
+                id = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            cards = comicRepository.findPopularCardsAfter(viewCount, id, limit);
+        }
+        return toFeed(cards, size, SORT_POPULAR);
+    }
+
+    /**
+     * 最新漫画的游标分页
+     */
+    @Transactional(readOnly = true)
+    public ComicFeed getLatestFeed(String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size);
+        List<ComicCard> cards;
+        if (cursor == null || cursor.isEmpty()) {
+            cards = comicRepository.findLatestCards(limit);
+        } else {
+            String[] parts = decodeCursor(cursor);
+            LocalDateTime createdAt;
+            long id;
+            try {
+                createdAt = LocalDateTime.parse(parts[0]);
+                id = Long.parseLong(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            cards = comicRepository.findLatestCardsAfter(createdAt, id, limit);
+        }
+        return toFeed(cards, size, SORT_LATEST);
+    }
+
+    /**
+     * 指定卡片之后的游标，用于从偏移分页的最后一页切换到游标分页
+     */
+    public String cursorAfter(String sort, ComicCard card) {
+        String key = SORT_POPULAR.equals(sort)
+                ? String.valueOf(card.getStoredViewCount())
+                : card.getCreatedAt().toString();
+        String raw = key + CURSOR_SEPARATOR + card.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
      * 根据ID获取漫画
      */
+    @Transactional(readOnly = true)
     public Comic getComicById(Long id) {
-        return comicRepository.findById(id)
+        Comic comic = comicRepository.findWithTagsById(id)
                 .orElseThrow(() -> new RuntimeException("漫画不存在"));
+        comic.setPendingViewCount(viewCountService.getPendingCount(id));
+        return comic;
     }
 
     /**
      * 根据用户ID获取漫画
      */
+    @Transactional(readOnly = true)
     public List<Comic> getComicsByUser(User user) {
-        return comicRepository.findByUserId(user.getId());
+        return withPendingViews(comicRepository.findByUserId(user.getId()));
     }
 
     /**
      * 根据用户ID获取漫画（分页版）
      */
+    @Transactional(readOnly = true)
     public Page<Comic> getComicsByUser(User user, Pageable pageable) {
-        return comicRepository.findByUserId(user.getId(), pageable);
+        return withPendingViews(comicRepository.findByUserId(user.getId(), pageable));
     }
 
     /**
-     * 上传漫画
+     * 上传漫画：先并行写入全部原图，再开启事务插入漫画记录；数据库失败时清理已写入的页面
+     * 缩略图和页面校验由后台任务完成，漫画在任务结束前显示为处理中
      */
-    @Transactional
-    public Comic uploadComic(UploadComicRequest request, User user) throws IOException {
+    public Comic uploadComic(UploadComicRequest request, SessionUser user) throws IOException {
+        MultipartFile[] pages = request.getPages();
+        if (pages == null || pages.length == 0) {
+            throw new RuntimeException("请至少上传一页漫画");
+        }
+
         String comicFolder = UUID.randomUUID().toString();
 
         // 保存封面
         String coverPath = storageService.storeCoverImage(request.getCoverImage());
 
-        // 保存漫画页面
-        MultipartFile[] pages = request.getPages();
-        if (pages == null || pages.length == 0) {
-            throw new RuntimeException("请至少上传一页漫画");
+        // 并行保存漫画页面
+        int pageCount;
+        try {
+            pageCount = storageService.storeComicPages(pages, comicFolder);
+        } catch (IOException | RuntimeException e) {
+            storageService.releaseFile(coverPath);
+            throw e;
         }
 
-        for (int i = 0; i < pages.length; i++) {
-            MultipartFile page = pages[i];
-            if (page != null && !page.isEmpty()) {
+        return saveStoredComic(request, user, coverPath, comicFolder, pageCount);
+    }
 
-                storageService.storeComicPage(page, comicFolder);
-            }
+    /**
+     * 页面和封面已经写入存储（表单上传或归档导入），在事务中插入漫画记录；失败时清理已写入的文件
+     */
+    public Comic saveStoredComic(UploadComicRequest metadata, SessionUser user, String coverPath,
+                                 String comicFolder, int pageCount) throws IOException {
+        pagesPerUpload.record(pageCount);
+        try {
+            return transactionTemplate.execute(status -> saveUploadedComic(metadata, user, coverPath, comicFolder, pageCount));
+        } catch (RuntimeException e) {
+            storageService.deleteFolder(comicFolder);
+            storageService.releaseFile(coverPath);
+            throw e;
         }
+    }
 
-        // 处理标签
-        Set<Tag> tags = new HashSet<>();
+    private Comic saveUploadedComic(UploadComicRequest request, SessionUser user, String coverPath,
+                                    String comicFolder, int pageCount) {
+        // 处理标签（支持逗号分隔），整批解析
+        List<String> tagNames = new ArrayList<>();
         List<String> tagList = request.getTags();
-
         if (tagList != null) {
             for (String tagItem : tagList) {
-                // 处理逗号分隔的标签
-                if (tagItem.contains(",")) {
-                    String[] splitTags = tagItem.split(",");
-                    for (String tagName : splitTags) {
-                        tagName = tagName.trim();
-                        if (!tagName.isEmpty()) {
-                            Tag tag = getOrCreateTag(tagName);
-                            tags.add(tag);
-                        }
-                    }
-                } else {
-                    String tagName = tagItem.trim();
-                    if (!tagName.isEmpty()) {
-                        Tag tag = getOrCreateTag(tagName);
-                        tags.add(tag);
-                    }
-                }
+                tagNames.addAll(Arrays.asList(tagItem.split(",")));
             }
         }
+        Set<Tag> tags = tagDictionaryService.resolve(tagNames);
 
         // 创建漫画记录
         Comic comic = new Comic();
@@ -150,34 +307,53 @@ public class ComicService {
         comic.setAuthor(request.getAuthor());
         comic.setCoverImagePath(coverPath);
         comic.setFolderPath(comicFolder);
-        comic.setChapterCount(pages.length);
-        comic.setUser(user);
+        comic.setChapterCount(pageCount);
+        comic.setUser(userRepository.getReferenceById(user.id()));
         comic.setTags(tags);
-
-        return comicRepository.save(comic);
+        comic.setStatus(ComicStatus.PROCESSING);
+
+        Comic saved = comicRepository.save(comic);
+        // 后台任务和漫画记录同一事务提交
+        jobQueueService.enqueue(ComicDerivativesJobHandler.TYPE, saved.getId());
+        jobQueueService.enqueue(ComicPageCheckJobHandler.TYPE, saved.getId());
+        jobQueueService.enqueue(ComicManifestJobHandler.TYPE, saved.getId());
+        tagUsageService.recordChange(Collections.emptySet(), tags);
+        searchService.index(saved);
+        relatedComicsService.index(saved);
+        eventPublisher.publishEvent(new ComicChangedEvent(saved.getId(), ComicChangedEvent.Type.UPLOADED));
+        return saved;
     }
 
     /**
      * 删除漫画
      */
     @Transactional
-    public void deleteComic(Long comicId, User user) throws IOException {
+    public void deleteComic(Long comicId, SessionUser user) throws IOException {
         Comic comic = comicRepository.findById(comicId)
                 .orElseThrow(() -> new RuntimeException("漫画不存在"));
 
         // 检查权限
-        if (!comic.getUser().getId().equals(user.getId()) &&
-                user.getRole() != UserRole.ADMIN) {
+        if (!user.canManage(comic.getUser().getId())) {
             throw new RuntimeException("没有删除权限");
         }
 
-        // 删除文件
+        // 先撤销还没开始的后台任务；正在执行的打包由 StorageService 的目录锁与删除互斥
+        jobQueueService.discard(comicId);
+
+        // 删除文件：提交后执行，删除失败回滚时页面和封面仍在
         if (comic.getFolderPath() != null) {
-            storageService.deleteFolder(comic.getFolderPath());
+            deleteFolderAfterCommit(comic.getFolderPath());
         }
+        releaseAfterCommit(comic.getCoverImagePath());
 
         // 删除数据库记录
+        tagUsageService.recordChange(comic.getTags(), Collections.emptySet());
         comicRepository.delete(comic);
+        comicManifestService.discard(comicId);
+        viewCountService.discard(comicId);
+        searchService.remove(comicId);
+        relatedComicsService.remove(comicId);
+        eventPublisher.publishEvent(new ComicChangedEvent(comicId, ComicChangedEvent.Type.DELETED));
     }
 
     /**
@@ -185,12 +361,11 @@ public class ComicService {
      */
     @Transactional
     public Comic updateComic(Long comicId, String title, String description, String author,
-                             List<String> tagNames, User user) {
+                             List<String> tagNames, SessionUser user) {
         Comic comic = getComicById(comicId);
 
         // 检查权限
-        if (!comic.getUser().getId().equals(user.getId()) &&
-                user.getRole() != UserRole.ADMIN) {
+        if (!user.canManage(comic.getUser().getId())) {
             throw new RuntimeException("没有编辑权限");
         }
 
@@ -201,165 +376,286 @@ public class ComicService {
 
         // 更新标签
         if (tagNames != null) {
-            Set<Tag> tags = new HashSet<>();
-            for (String tagName : tagNames) {
-                tagName = tagName.trim();
-                if (!tagName.isEmpty()) {
-                    Tag tag = getOrCreateTag(tagName);
-                    tags.add(tag);
-                }
-            }
+            Set<Tag> tags = tagDictionaryService.resolve(tagNames);
+            tagUsageService.recordChange(comic.getTags(), tags);
             comic.setTags(tags);
         }
 
-        return comicRepository.save(comic);
+        Comic saved = comicRepository.save(comic);
+        searchService.index(saved);
+        relatedComicsService.index(saved);
+        eventPublisher.publishEvent(new ComicChangedEvent(saved.getId(), ComicChangedEvent.Type.UPDATED));
+        return saved;
     }
 
     /**
      * 更新漫画封面
      */
     @Transactional
-    public Comic updateCoverImage(Long comicId, MultipartFile coverImage, User user) throws IOException {
+    public Comic updateCoverImage(Long comicId, MultipartFile coverImage, SessionUser user) throws IOException {
         Comic comic = getComicById(comicId);
 
         // 检查权限
-        if (!comic.getUser().getId().equals(user.getId()) &&
-                user.getRole() != UserRole.ADMIN) {
+        if (!user.canManage(comic.getUser().getId())) {
             throw new RuntimeException("没有编辑权限");
         }
 
-        // 保存新封面
+        // 保存新封面，提交后再释放旧封面的引用
+        String oldCoverPath = comic.getCoverImagePath();
         String newCoverPath = storageService.storeCoverImage(coverImage);
-
-        // TODO: 可选 - 删除旧的封面文件
+        releaseAfterCommit(oldCoverPath);
 
         // 更新封面路径
         comic.setCoverImagePath(newCoverPath);
 
-        return comicRepository.save(comic);
+        Comic saved = comicRepository.save(comic);
+        jobQueueService.enqueue(ComicDerivativesJobHandler.TYPE, saved.getId());
+        eventPublisher.publishEvent(new ComicChangedEvent(saved.getId(), ComicChangedEvent.Type.COVER_UPDATED));
+        return saved;
     }
 
     /**
-     * 增加漫画浏览量
+     * 增加漫画浏览量（先写入内存计数器，由 ViewCountService 定时批量写回）
      */
-    @Transactional
-    public void incrementViewCount(Long comicId) {
-        Comic comic = getComicById(comicId);
-        comic.setViewCount(comic.getViewCount() + 1);
-        comicRepository.save(comic);
+    public void incrementViewCount(Comic comic) {
+        viewCountService.increment(comic.getId());
+        comic.setPendingViewCount(viewCountService.getPendingCount(comic.getId()));
     }
 
     /**
-     * 搜索漫画
+     * 搜索漫画（倒排索引排序分页，再一次性按ID加载列表卡片）
      */
-    public List<Comic> searchComics(String keyword, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Page<ComicCard> searchComics(String keyword, Pageable pageable) {
         if (keyword == null || keyword.trim().isEmpty()) {
-            return getAllComics();
+            return getAllComics(pageable);
+        }
+
+        Page<Long> idPage = searchService.search(keyword.trim(), pageable);
+        if (idPage.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        Map<Long, ComicCard> cardsById = new HashMap<>();
+        for (ComicCard card : comicRepository.findCardsByIdIn(idPage.getContent())) {
+            cardsById.put(card.getId(), card);
+        }
+        List<ComicCard> ordered = new ArrayList<>();
+        for (Long id : idPage.getContent()) {
+            ComicCard card = cardsById.get(id);
+            if (card != null) {
+                ordered.add(card);
+            }
         }
-        return comicRepository.searchComics(keyword.trim());
+        return completeCards(new PageImpl<>(ordered, pageable, idPage.getTotalElements()));
+    }
+
+    /**
+     * 相关漫画（共同标签和同作者），推荐列表已预先算好，只需按ID加载一次卡片
+     */
+    @Transactional(readOnly = true)
+    public List<ComicCard> getRelatedComics(Long comicId, int limit) {
+        List<Long> ids = relatedComicsService.relatedIds(comicId, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, ComicCard> cardsById = new HashMap<>();
+        for (ComicCard card : comicRepository.findCardsByIdIn(ids)) {
+            cardsById.put(card.getId(), card);
+        }
+        List<ComicCard> ordered = new ArrayList<>();
+        for (Long id : ids) {
+            ComicCard card = cardsById.get(id);
+            if (card != null) {
+                ordered.add(card);
+            }
+        }
+        return completeCards(ordered);
     }
 
     /**
      * 按标题搜索漫画
      */
+    @Transactional(readOnly = true)
     public List<Comic> searchByTitle(String title) {
-        return comicRepository.findByTitleContainingIgnoreCase(title);
+        return withPendingViews(comicRepository.findByTitleContainingIgnoreCase(title));
     }
 
     /**
      * 按作者搜索漫画
      */
+    @Transactional(readOnly = true)
     public List<Comic> searchByAuthor(String author) {
-        return comicRepository.findByAuthorContainingIgnoreCase(author);
+        return withPendingViews(comicRepository.findByAuthorContainingIgnoreCase(author));
     }
 
     /**
      * 按标签搜索漫画
      */
+    @Transactional(readOnly = true)
     public List<Comic> searchByTag(String tagName) {
-        return comicRepository.findByTagName(tagName);
+        return withPendingViews(comicRepository.findByTagName(tagName));
     }
 
     /**
-     * 高级搜索（多条件组合）
+     * 高级搜索（多条件组合，由数据库完成过滤和分页）
      */
-    public List<Comic> advancedSearch(String title, String author, String tag) {
-        Set<Comic> resultSet = new HashSet<>();
-        boolean hasCondition = false;
+    @Transactional(readOnly = true)
+    public Page<ComicCard> advancedSearch(String title, String author, String tag, Pageable pageable) {
+        Specification<Comic> spec = null;
 
         if (title != null && !title.trim().isEmpty()) {
-            resultSet.addAll(searchByTitle(title.trim()));
-            hasCondition = true;
+            spec = and(spec, ComicSpecifications.titleContains(title.trim()));
         }
-
         if (author != null && !author.trim().isEmpty()) {
-            if (hasCondition) {
-                // 取交集
-                resultSet.retainAll(searchByAuthor(author.trim()));
-            } else {
-                resultSet.addAll(searchByAuthor(author.trim()));
-                hasCondition = true;
-            }
+            spec = and(spec, ComicSpecifications.authorContains(author.trim()));
         }
-
         if (tag != null && !tag.trim().isEmpty()) {
-            if (hasCondition) {
-                // 取交集
-                resultSet.retainAll(searchByTag(tag.trim()));
-            } else {
-                resultSet.addAll(searchByTag(tag.trim()));
-            }
+            spec = and(spec, ComicSpecifications.hasTagContaining(tag.trim()));
         }
 
-        if (!hasCondition && (tag == null || tag.trim().isEmpty())) {
-            return getAllComics();
+        if (spec == null) {
+            return getAllComics(pageable);
         }
-
-        return new ArrayList<>(resultSet);
+        return completeCards(comicRepository.findAll(spec, pageable).map(comic -> new ComicCard(
+                comic.getId(), comic.getTitle(), comic.getAuthor(), comic.getDescription(),
+                comic.getCoverImagePath(), comic.getChapterCount(), comic.getViewCount(), comic.getCreatedAt())));
     }
 
     /**
      * 获取所有标签
      */
+    @Cacheable(CacheNames.ALL_TAGS)
+    @Transactional(readOnly = true)
     public List<String> getAllTags() {
         List<Tag> tags = tagRepository.findAll();
         List<String> tagNames = new ArrayList<>();
         for (Tag tag : tags) {
             tagNames.add(tag.getName());
         }
-        return tagNames;
+        // 缓存中的列表被多个请求共享，不允许修改
+        return Collections.unmodifiableList(tagNames);
     }
 
     /**
-     * 获取热门标签（按使用频率）
+     * 获取热门标签（按使用频率），每项为 {标签名, 次数}
      */
     public List<Object[]> getPopularTags(int limit) {
-        return comicRepository.findPopularTags(limit);
+        return tagUsageService.topTags(limit);
     }
 
     /**
      * 统计漫画数量
      */
+    @Transactional(readOnly = true)
     public long countComics() {
         return comicRepository.count();
     }
 
+    /**
+     * 用户的漫画统计（数量、总浏览量）；浏览量为已写回数据库的值，最多落后一个写回周期
+     */
+    @Transactional(readOnly = true)
+    public UserComicStats getUserStats(User user) {
+        return comicRepository.getUserStats(user.getId());
+    }
+
     /**
      * 统计用户漫画数量
      */
+    @Transactional(readOnly = true)
     public long countUserComics(User user) {
         return comicRepository.countByUserId(user.getId());
     }
 
+    private static Specification<Comic> and(Specification<Comic> spec, Specification<Comic> other) {
+        return spec == null ? other : spec.and(other);
+    }
+
+    private ComicFeed toFeed(List<ComicCard> cards, int size, String sort) {
+        completeCards(cards);
+        // 取满一页才可能还有下一页
+        String nextCursor = cards.size() < size ? null : cursorAfter(sort, cards.get(cards.size() - 1));
+        return new ComicFeed(cards, nextCursor);
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(CURSOR_SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalArgumentException(raw);
+            }
+            return new String[]{raw.substring(0, separator), raw.substring(separator + 1)};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
     /**
-     * 获取或创建标签
+     * 补全列表卡片：一次查询加载整页的标签，并合并未写回的浏览增量
      */
-    private Tag getOrCreateTag(String tagName) {
-        return tagRepository.findByName(tagName)
-                .orElseGet(() -> {
-                    Tag newTag = new Tag();
-                    newTag.setName(tagName);
-                    return tagRepository.save(newTag);
+    private <C extends Iterable<ComicCard>> C completeCards(C cards) {
+        Map<Long, ComicCard> cardsById = new HashMap<>();
+        for (ComicCard card : cards) {
+            cardsById.put(card.getId(), card);
+            card.setPendingViewCount(viewCountService.getPendingCount(card.getId()));
+        }
+        if (cardsById.isEmpty()) {
+            return cards;
+        }
+        for (Object[] row : comicRepository.findTagNamesByComicIds(cardsById.keySet())) {
+            cardsById.get((Long) row[0]).getTags().add((String) row[1]);
+        }
+        return cards;
+    }
+
+    /**
+     * 事务提交后再释放文件引用：回滚时漫画记录仍指向原文件；
+     * 也不在事务中持有引用计数的行锁，避免阻塞其他上传相同内容的请求
+     */
+    private void releaseAfterCommit(String relativePath) {
+        runAfterCommit("释放文件失败: {}", relativePath, () -> storageService.releaseFile(relativePath));
+    }
+
+    /**
+     * 漫画目录同样在提交后删除：删除会领取 .blobs 清单、删掉页面并释放内容引用，回滚后无法恢复
+     */
+    private void deleteFolderAfterCommit(String folder) {
+        runAfterCommit("删除漫画目录失败: {}", folder, () -> storageService.deleteFolder(folder));
+    }
+
+    /**
+     * 提交回调中原事务已经结束，释放引用计数要在新的事务中执行
+     */
+    private void runAfterCommit(String failure, String path, FileTask task) {
+        TransactionHooks.afterCommit(() -> {
+            try {
+                afterCommitTransaction.executeWithoutResult(status -> {
+                    try {
+                        task.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 });
+            } catch (RuntimeException e) {
+                log.warn(failure, path, e);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface FileTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * 把未写回的浏览增量合并到漫画上，保证页面显示的浏览量是最新的
+     */
+    private <C extends Iterable<Comic>> C withPendingViews(C comics) {
+        for (Comic comic : comics) {
+            comic.setPendingViewCount(viewCountService.getPendingCount(comic.getId()));
+        }
+        return comics;
     }
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 图片衍生尺寸：为封面和漫画页生成不同宽度的渐进式 JPEG
+ * 命名规则为 {原文件名}@{宽度}.jpg，与原图放在同一目录
+ */
+@Service
+public class ImageDerivativeService {
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private final int[] widths;
+    private final float quality;
+    private final long maxPixels;
+    private final ConcurrentHashMap<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageDerivativeService(@Value("${app.image.widths:240,720,1440}") int[] widths,
+                                  @Value("${app.image.quality:0.82}") float quality,
+                                  @Value("${app.image.max-pixels:40000000}") long maxPixels) {
+        this.widths = widths.clone();
+        Arrays.sort(this.widths);
+        this.quality = quality;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * 是否为支持的衍生宽度（只生成配置中的宽度，避免任意尺寸请求占满磁盘）
+     */
+    public boolean isSupportedWidth(int width) {
+        return Arrays.binarySearch(widths, width) >= 0;
+    }
+
+    /**
+     * 配置的衍生宽度，升序
+     */
+    public int[] getWidths() {
+        return widths.clone();
+    }
+
+    /**
+     * 按宽度等比缩放后的高度，与生成衍生图时一致
+     */
+    public int scaledHeight(int width, int height, int targetWidth) {
+        return Math.max(1, Math.round((float) height * targetWidth / width));
+    }
+
+    /**
+     * 原图路径对应的衍生图路径，供模板使用，例如 covers/a.jpg -> covers/a@240.jpg
+     */
+    public String variantPath(String path, int width) {
+        if (path == null || path.isEmpty()) {
+            return path;
+        }
+        int dot = path.lastIndexOf('.');
+        int slash = path.lastIndexOf('/');
+        String base = dot > slash ? path.substring(0, dot) : path;
+        return base + "@" + width + ".jpg";
+    }
+
+    /**
+     * 文件保存后生成全部衍生尺寸；失败只记录日志，不影响原图保存
+     */
+    public void generateAll(Path original) {
+        boolean allPresent = Arrays.stream(widths).allMatch(width -> Files.exists(variantFile(original, width)));
+        if (allPresent) {
+            // 相同内容的文件已经生成过
+            return;
+        }
+
+        BufferedImage source;
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            source = in != null ? decodeIfWider(in, 0) : null;
+        } catch (IOException e) {
+            log.warn("无法读取图片 {}，跳过衍生图生成", original, e);
+            return;
+        }
+        if (source == null) {
+            log.warn("不支持的图片格式或像素过多 {}，跳过衍生图生成", original);
+            return;
+        }
+
+        for (int width : widths) {
+            try {
+                writeVariant(source, variantFile(original, width), width);
+            } catch (IOException e) {
+                log.warn("生成衍生图失败 {}@{}", original, width, e);
+            }
+        }
+    }
+
+    /**
+     * 获取指定宽度的衍生图，缺失时按需生成；原图比目标宽度窄时直接返回原图
+     */
+    public Path resolveVariant(Path original, int width) throws IOException {
+        Path variant = variantFile(original, width);
+        if (Files.exists(variant)) {
+            return variant;
+        }
+        Path written = generateOnce(variant, () -> {
+            try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+                return in != null ? writeVariant(decodeIfWider(in, width), variant, width) : null;
+            }
+        });
+        return written != null ? written : original;
+    }
+
+    /**
+     * 原图不是单独文件（如打包漫画）时按需生成衍生图，写到 variant 指定的位置；
+     * 原图比目标宽度窄或无法解码时返回 null
+     */
+    public Path resolveVariant(InputStream original, Path variant, int width) throws IOException {
+        if (Files.exists(variant)) {
+            return variant;
+        }
+        return generateOnce(variant, () -> {
+            try (ImageInputStream in = ImageIO.createImageInputStream(original)) {
+                BufferedImage source = decodeIfWider(in, width);
+                if (source == null) {
+                    return null;
+                }
+                Files.createDirectories(variant.getParent());
+                return writeVariant(source, variant, width);
+            }
+        });
+    }
+
+    /**
+     * 同一衍生图同时只生成一次：热门新页面的并发请求等待第一个请求的结果，而不是各自解码整张原图
+     */
+    private Path generateOnce(Path variant, VariantGenerator generator) throws IOException {
+        CompletableFuture<Path> generation = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(variant, generation);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // 可能在检查文件和登记之间刚由其他请求生成完毕
+            Path result = Files.exists(variant) ? variant : generator.generate();
+            generation.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(variant, generation);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> generation) throws IOException {
+        try {
+            return generation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待衍生图生成时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 先只解析图片头取宽高，原图不比目标宽时不解码像素；无法识别的格式同样返回 null
+     * 像素数超过 maxPixels 的图片也不解码（宽高很大的图片文件可以很小，解码后会占满堆内存），直接使用原图
+     */
+    private BufferedImage decodeIfWider(ImageInputStream in, int width) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in, true, true);
+            int sourceWidth = reader.getWidth(0);
+            if (sourceWidth <= width) {
+                return null;
+            }
+            long pixels = (long) sourceWidth * reader.getHeight(0);
+            if (pixels > maxPixels) {
+                log.warn("图片像素数 {} 超过上限 {}，不生成衍生图", pixels, maxPixels);
+                return null;
+            }
+            return reader.read(0);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private Path writeVariant(BufferedImage source, Path variant, int width) throws IOException {
+        if (source == null || source.getWidth() <= width) {
+            return null;
+        }
+
+        int height = scaledHeight(source.getWidth(), source.getHeight(), width);
+        BufferedImage scaled = scale(source, width, height);
+
+        // 先写临时文件再原子替换，避免并发请求读到半写的图片
+        Path temp = Files.createTempFile(variant.getParent(), ".variant-", ".tmp");
+        try {
+            writeProgressiveJpeg(scaled, temp);
+            Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return variant;
+    }
+
+    private Path variantFile(Path original, int width) {
+        return original.resolveSibling(variantPath(original.getFileName().toString(), width));
+    }
+
+    /**
+     * 逐步减半缩放，大幅缩小时比一次双线性插值的画质更好
+     */
+    private BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    private void writeProgressiveJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @FunctionalInterface
+    private interface VariantGenerator {
+        Path generate() throws IOException;
+    }
+}
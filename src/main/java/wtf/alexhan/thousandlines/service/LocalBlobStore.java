@@ -0,0 +1,200 @@
+package wtf.alexhan.thousandlines.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import wtf.alexhan.thousandlines.model.StoredBlob;
+import wtf.alexhan.thousandlines.repository.StoredBlobRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 本地磁盘的内容寻址存储：文件按 SHA-256 分两级目录存放，例如 blobs/ab/cd/abcd....jpg
+ *
+ * 上传与删除同一内容的竞争由 stored_blobs 的行锁协调：上传先增加引用再放置文件，
+ * 删除在单独的事务中锁住该行、确认没有引用后才删文件，不在 JVM 锁里等待数据库
+ */
+@Service
+public class LocalBlobStore implements BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(LocalBlobStore.class);
+
+    static final String BLOB_DIR = "blobs";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final StoredBlobRepository storedBlobRepository;
+    private final DistributionSummary bytesWritten;
+    private final Counter deduplicated;
+    // 删除在调用方事务提交后执行，需要自己的事务
+    private final TransactionTemplate deletion;
+
+    public LocalBlobStore(@Value("${app.upload-dir}") String uploadDir, StoredBlobRepository storedBlobRepository,
+                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.root = Paths.get(uploadDir, BLOB_DIR);
+        this.storedBlobRepository = storedBlobRepository;
+        this.deletion = new TransactionTemplate(transactionManager);
+        this.deletion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bytesWritten = DistributionSummary.builder("storage.bytes.written").baseUnit("bytes")
+                .tag("kind", "blob").register(meterRegistry);
+        this.deduplicated = Counter.builder("storage.blob.deduplicated").register(meterRegistry);
+    }
+
+    @Override
+    public String put(InputStream content, String extension) throws IOException {
+        Path tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "blob-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    size += read;
+                }
+                channel.force(true);
+            }
+
+            String key = HexFormat.of().formatHex(digest.digest()) + extension;
+            Path target = resolve(key);
+
+            // 先增加引用：正在删除这份内容时会等删除提交，之后文件已不存在，下面重新放置
+            if (storedBlobRepository.acquire(key, size) == 0 && storedBlobRepository.acquire(key, size) == 0) {
+                throw new IllegalStateException("无法登记内容引用: " + key);
+            }
+            try {
+                // 相同内容已存在时直接丢弃临时文件；并发上传相同内容时原子移动互相覆盖，内容一致
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    bytesWritten.record(size);
+                } else {
+                    deduplicated.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                release(key);
+                throw e;
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public String relativePath(String key) {
+        return BLOB_DIR + "/" + key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+
+    @Override
+    public String keyOf(String relativePath) {
+        if (relativePath == null || !relativePath.startsWith(BLOB_DIR + "/")) {
+            return null;
+        }
+        return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public Path resolve(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    @Override
+    public void linkTo(String key, Path target) throws IOException {
+        Path source = resolve(key);
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // 跨文件系统或不支持硬链接时退化为复制
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 在调用方的事务中减少引用；文件在事务提交后才删除，回滚时数据库仍引用的内容不会丢失
+     */
+    @Override
+    public void release(String key) throws IOException {
+        storedBlobRepository.release(key);
+        TransactionHooks.afterCommit(() -> deleteIfUnreferenced(key));
+    }
+
+    /**
+     * 锁住引用行后确认引用已归零，再删除文件和这一行；提交之后重新上传的相同内容会让引用数大于零，此时保留文件。
+     * 删除失败时事务回滚，引用数为零的行留着，下次释放同一内容时再删
+     */
+    private void deleteIfUnreferenced(String key) {
+        try {
+            deletion.executeWithoutResult(status -> {
+                StoredBlob stored = storedBlobRepository.findForUpdate(key).orElse(null);
+                if (stored == null || stored.getRefCount() > 0) {
+                    return;
+                }
+                Path blob = resolve(key);
+                try {
+                    Files.deleteIfExists(blob);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                deleteVariants(blob);
+                storedBlobRepository.deleteIfUnreferenced(key);
+            });
+        } catch (RuntimeException e) {
+            log.warn("删除内容失败: {}", key, e);
+        }
+    }
+
+    /**
+     * 删除内容对应的衍生尺寸图片（{hash}@{width}.jpg）
+     */
+    private void deleteVariants(Path blob) {
+        Path dir = blob.getParent();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        String name = blob.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot > 0 ? name.substring(0, dot) : name) + "@";
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path variant : variants) {
+                Files.deleteIfExists(variant);
+            }
+        } catch (IOException e) {
+            log.warn("删除衍生图失败: {}", blob, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package wtf.alexhan.thousandlines.service;
+
+/**
+ * 密码哈希线程池已满，请求应以 503 拒绝
+ */
+public class PasswordHashingOverloadedException extends RuntimeException {
+    public PasswordHashingOverloadedException() {
+        super("登录人数过多，请稍后再试");
+    }
+}
@@ -0,0 +1,325 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.Tag;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 相关漫画推荐：按标签集合的 Jaccard 相似度加同作者加分打分，每部漫画的前 K 个结果算好后保存在内存中
+ *
+ * 内存中只保存每部漫画的作者和标签ID，以及 标签 -> 漫画、作者 -> 漫画 的倒排表；
+ * 推荐列表在第一次访问时计算并缓存，漫画上传、修改标签或删除时增量更新受影响的列表
+ */
+@Service
+public class RelatedComicsService {
+    private static final Logger log = LoggerFactory.getLogger(RelatedComicsService.class);
+
+    private static final Comparator<Related> RANKING = Comparator.comparingDouble(Related::score).reversed()
+            .thenComparing(Comparator.comparingLong(Related::comicId).reversed());
+    private static final long[] NO_TAGS = new long[0];
+
+    private final ComicRepository comicRepository;
+    // 每部漫画保存的推荐数量
+    private final int topK;
+    // 同作者的加分，Jaccard 相似度的取值范围是 0~1
+    private final double authorWeight;
+    // 每个倒排表最多扫描的候选数（从最新的漫画开始），热门标签下避免扫描全部漫画
+    private final int maxCandidatesPerKey;
+
+    // 漫画ID -> 作者和标签；倒排表中的漫画ID有序，便于从最新的开始扫描
+    private final Map<Long, Features> features = new HashMap<>();
+    private final Map<Long, NavigableSet<Long>> comicsByTag = new HashMap<>();
+    private final Map<String, NavigableSet<Long>> comicsByAuthor = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 已算好的推荐列表；version 在每次索引变化时递增，防止把过期的计算结果写入缓存
+    private final Map<Long, Related[]> topLists = new ConcurrentHashMap<>();
+    private long version;
+
+    public RelatedComicsService(ComicRepository comicRepository,
+                                @Value("${app.related.top-k:8}") int topK,
+                                @Value("${app.related.author-weight:0.5}") double authorWeight,
+                                @Value("${app.related.max-candidates-per-key:2000}") int maxCandidatesPerKey) {
+        this.comicRepository = comicRepository;
+        this.topK = topK;
+        this.authorWeight = authorWeight;
+        this.maxCandidatesPerKey = maxCandidatesPerKey;
+    }
+
+    /**
+     * 启动后加载全部漫画的作者和标签，只需两次查询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Map<Long, List<Long>> tagsByComic = new HashMap<>();
+        for (Object[] row : comicRepository.findAllComicTagIds()) {
+            tagsByComic.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        List<Object[]> authors = comicRepository.findAllAuthors();
+
+        lock.writeLock().lock();
+        try {
+            features.clear();
+            comicsByTag.clear();
+            comicsByAuthor.clear();
+            topLists.clear();
+            version++;
+            for (Object[] row : authors) {
+                Long comicId = (Long) row[0];
+                add(comicId, new Features(normalizeAuthor((String) row[1]), toSortedArray(tagsByComic.get(comicId))));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("相关推荐索引加载完成，共 {} 部漫画", authors.size());
+    }
+
+    /**
+     * 漫画新增或修改后更新索引；在事务中调用时于提交后生效
+     */
+    public void index(Comic comic) {
+        Long comicId = comic.getId();
+        List<Long> tagIds = new ArrayList<>();
+        if (comic.getTags() != null) {
+            for (Tag tag : comic.getTags()) {
+                tagIds.add(tag.getId());
+            }
+        }
+        Features updated = new Features(normalizeAuthor(comic.getAuthor()), toSortedArray(tagIds));
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Features previous = features.get(comicId);
+                if (updated.equals(previous)) {
+                    // 只改了标题、简介等，不影响推荐
+                    return;
+                }
+                if (previous != null) {
+                    detach(comicId, previous);
+                }
+                add(comicId, updated);
+                // 新的特征可能让这部漫画进入其他漫画的推荐列表
+                for (Map.Entry<Long, Double> candidate : score(comicId, updated).entrySet()) {
+                    offer(candidate.getKey(), new Related(comicId, candidate.getValue()));
+                }
+                topLists.remove(comicId);
+                version++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 从索引中移除一部漫画；在事务中调用时于提交后生效
+     */
+    public void remove(Long comicId) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Features previous = features.get(comicId);
+                if (previous != null) {
+                    detach(comicId, previous);
+                }
+                topLists.remove(comicId);
+                version++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 与指定漫画最相关的最多 limit 部漫画的ID，按相关度降序
+     */
+    public List<Long> relatedIds(Long comicId, int limit) {
+        Related[] top = topLists.get(comicId);
+        if (top == null) {
+            long seenVersion;
+            lock.readLock().lock();
+            try {
+                Features target = features.get(comicId);
+                if (target == null) {
+                    return Collections.emptyList();
+                }
+                seenVersion = version;
+                top = computeTop(comicId, target);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (seenVersion == version) {
+                    topLists.putIfAbsent(comicId, top);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(Math.min(limit, top.length));
+        for (Related related : top) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(related.comicId());
+        }
+        return ids;
+    }
+
+    private Related[] computeTop(Long comicId, Features target) {
+        List<Related> ranked = new ArrayList<>();
+        for (Map.Entry<Long, Double> entry : score(comicId, target).entrySet()) {
+            ranked.add(new Related(entry.getKey(), entry.getValue()));
+        }
+        ranked.sort(RANKING);
+        return ranked.subList(0, Math.min(topK, ranked.size())).toArray(new Related[0]);
+    }
+
+    /**
+     * 通过倒排表找出候选漫画并打分：共同标签数 / 标签并集大小，同作者再加 authorWeight
+     */
+    private Map<Long, Double> score(Long comicId, Features target) {
+        Map<Long, Integer> sharedTags = new HashMap<>();
+        for (long tagId : target.tagIds()) {
+            NavigableSet<Long> comics = comicsByTag.get(tagId);
+            if (comics == null) {
+                continue;
+            }
+            int scanned = 0;
+            for (Iterator<Long> it = comics.descendingIterator(); it.hasNext() && scanned < maxCandidatesPerKey; scanned++) {
+                sharedTags.merge(it.next(), 1, Integer::sum);
+            }
+        }
+
+        Set<Long> sameAuthor = new HashSet<>();
+        if (target.author() != null) {
+            NavigableSet<Long> comics = comicsByAuthor.get(target.author());
+            if (comics != null) {
+                int scanned = 0;
+                for (Iterator<Long> it = comics.descendingIterator(); it.hasNext() && scanned < maxCandidatesPerKey; scanned++) {
+                    sameAuthor.add(it.next());
+                }
+            }
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        sharedTags.forEach((candidateId, shared) -> {
+            Features candidate = features.get(candidateId);
+            int union = target.tagIds().length + candidate.tagIds().length - shared;
+            scores.put(candidateId, (double) shared / union);
+        });
+        for (Long candidateId : sameAuthor) {
+            scores.merge(candidateId, authorWeight, Double::sum);
+        }
+        scores.remove(comicId);
+        return scores;
+    }
+
+    /**
+     * 把一部漫画放进候选漫画已算好的推荐列表（分数够高才会进入前 K）
+     */
+    private void offer(Long candidateId, Related related) {
+        Related[] top = topLists.get(candidateId);
+        if (top == null) {
+            // 还没有算过，第一次访问时会完整计算
+            return;
+        }
+        if (top.length >= topK && RANKING.compare(related, top[top.length - 1]) >= 0) {
+            return;
+        }
+        List<Related> merged = new ArrayList<>(Arrays.asList(top));
+        merged.removeIf(existing -> existing.comicId() == related.comicId());
+        merged.add(related);
+        merged.sort(RANKING);
+        topLists.put(candidateId, merged.subList(0, Math.min(topK, merged.size())).toArray(new Related[0]));
+    }
+
+    private void add(Long comicId, Features value) {
+        features.put(comicId, value);
+        for (long tagId : value.tagIds()) {
+            comicsByTag.computeIfAbsent(tagId, id -> new TreeSet<>()).add(comicId);
+        }
+        if (value.author() != null) {
+            comicsByAuthor.computeIfAbsent(value.author(), author -> new TreeSet<>()).add(comicId);
+        }
+    }
+
+    /**
+     * 从倒排表中移除，并让包含这部漫画的推荐列表失效（下次访问时重新计算）
+     */
+    private void detach(Long comicId, Features previous) {
+        for (Long candidateId : score(comicId, previous).keySet()) {
+            Related[] top = topLists.get(candidateId);
+            if (top != null && Arrays.stream(top).anyMatch(related -> related.comicId() == comicId)) {
+                topLists.remove(candidateId);
+            }
+        }
+
+        features.remove(comicId);
+        for (long tagId : previous.tagIds()) {
+            removeFrom(comicsByTag, tagId, comicId);
+        }
+        if (previous.author() != null) {
+            removeFrom(comicsByAuthor, previous.author(), comicId);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, NavigableSet<Long>> postings, K key, Long comicId) {
+        NavigableSet<Long> comics = postings.get(key);
+        if (comics != null) {
+            comics.remove(comicId);
+            if (comics.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 作者精确匹配，只忽略首尾空白和大小写
+     */
+    private static String normalizeAuthor(String author) {
+        if (author == null || author.isBlank()) {
+            return null;
+        }
+        return author.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] toSortedArray(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return NO_TAGS;
+        }
+        return ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+    }
+
+    private record Features(String author, long[] tagIds) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Features other && Objects.equals(author, other.author)
+                    && Arrays.equals(tagIds, other.tagIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(author) + Arrays.hashCode(tagIds);
+        }
+    }
+
+    private record Related(long comicId, double score) {
+    }
+}
@@ -1,6 +1,319 @@
 package wtf.alexhan.thousandlines.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.Tag;
 import wtf.alexhan.thousandlines.repository.ComicRepository;
 
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 漫画全文检索：内存倒排索引，覆盖标题、作者、简介和标签
+ */
+@Service
+@Timed("search.service")
 public class SearchService {
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    // 各字段权重
+    private static final int TITLE_WEIGHT = 4;
+    private static final int AUTHOR_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private final ComicRepository comicRepository;
+
+    // 词项 -> (漫画ID -> 权重)，有序以支持英文前缀匹配
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    // 中日韩二元组按第二个字排在前面（“乙甲” -> “甲乙”），单字查询据此找出以该字结尾的二元组
+    private final NavigableMap<String, String> bigramsBySecond = new TreeMap<>();
+    // 漫画ID -> 该漫画的全部词项，用于增量删除
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final DistributionSummary resultSizes;
+
+    public SearchService(ComicRepository comicRepository, MeterRegistry meterRegistry) {
+        this.comicRepository = comicRepository;
+        this.resultSizes = DistributionSummary.builder("search.results").baseUnit("comics")
+                .publishPercentiles(0.5, 0.95).register(meterRegistry);
+    }
+
+    /**
+     * 启动后分批从数据库重建索引；每批的标签名用一次查询取出，不逐部加载标签集合
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        int page = 0;
+        int indexed = 0;
+        Page<Comic> batch;
+        do {
+            batch = comicRepository.findAll(PageRequest.of(page++, REBUILD_BATCH_SIZE, Sort.by("id")));
+            Map<Long, List<String>> tagNames = new HashMap<>();
+            if (batch.hasContent()) {
+                List<Long> ids = batch.map(Comic::getId).getContent();
+                for (Object[] row : comicRepository.findTagNamesByComicIds(ids)) {
+                    tagNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+                }
+            }
+            for (Comic comic : batch) {
+                applyIndex(comic.getId(), collectTerms(comic, tagNames.getOrDefault(comic.getId(), List.of())));
+                indexed++;
+            }
+        } while (batch.hasNext());
+        log.info("搜索索引重建完成，共 {} 部漫画", indexed);
+    }
+
+    /**
+     * 索引（或重新索引）一部漫画；在事务中调用时于提交后生效
+     */
+    public void index(Comic comic) {
+        Long comicId = comic.getId();
+        List<String> tagNames = comic.getTags() == null ? List.of()
+                : comic.getTags().stream().map(Tag::getName).toList();
+        Map<String, Integer> terms = collectTerms(comic, tagNames);
+        TransactionHooks.afterCommit(() -> applyIndex(comicId, terms));
+    }
+
+    /**
+     * 从索引中移除一部漫画；在事务中调用时于提交后生效
+     */
+    public void remove(Long comicId) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeTerms(comicId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 关键词搜索，返回按相关度排序的漫画ID分页
+     */
+    public Page<Long> search(String keyword, Pageable pageable) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(keyword)));
+        if (queryTerms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String term : queryTerms) {
+                Map<Long, Integer> matches = match(term);
+                if (scores == null) {
+                    scores = matches;
+                } else {
+                    // 所有词项都需命中
+                    scores.keySet().retainAll(matches.keySet());
+                    for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + matches.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        resultSizes.record(scores.size());
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.<Long, Integer>comparingByKey().reversed()));
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<Long> ids = new ArrayList<>(to - from);
+        for (Map.Entry<Long, Integer> entry : ranked.subList(from, to)) {
+            ids.add(entry.getKey());
+        }
+        return new PageImpl<>(ids, pageable, ranked.size());
+    }
+
+    /**
+     * 分词：拉丁字母和数字按词切分，中日韩文字切成二元组（单独出现的字保留为单字）
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isCjk(codePoint)) {
+                flushWord(word, tokens);
+                cjkRun.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjk(cjkRun, tokens);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjkRun, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjkRun, tokens);
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<String> run, List<String> tokens) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() == 1) {
+            tokens.add(run.get(0));
+        } else {
+            for (int i = 0; i + 1 < run.size(); i++) {
+                tokens.add(run.get(i) + run.get(i + 1));
+            }
+        }
+        run.clear();
+    }
+
+    /**
+     * 单个查询词项的命中：英文词支持前缀匹配，中文单字匹配所有包含它的二元组
+     */
+    private Map<Long, Integer> match(String term) {
+        Map<Long, Integer> result = new HashMap<>();
+        Map<Long, Integer> exact = postings.get(term);
+        if (exact != null) {
+            exact.forEach((id, weight) -> result.merge(id, weight * 2, Integer::sum));
+        }
+
+        boolean singleCjk = term.codePointCount(0, term.length()) == 1 && isCjk(term.codePointAt(0));
+        if (singleCjk) {
+            // 单字查询：以该字开头的二元组在 postings 中相邻，以该字结尾的在 bigramsBySecond 中相邻
+            for (Map.Entry<String, Map<Long, Integer>> entry : prefixRange(postings, term).entrySet()) {
+                if (!entry.getKey().equals(term)) {
+                    entry.getValue().forEach((id, weight) -> result.merge(id, weight, Integer::sum));
+                }
+            }
+            for (String bigram : prefixRange(bigramsBySecond, term).values()) {
+                // 叠字（如“哈哈”）已在上面计入
+                if (!bigram.startsWith(term)) {
+                    postings.get(bigram).forEach((id, weight) -> result.merge(id, weight, Integer::sum));
+                }
+            }
+        } else if (!isCjk(term.codePointAt(0))) {
+            for (Map.Entry<String, Map<Long, Integer>> entry : prefixRange(postings, term).entrySet()) {
+                entry.getValue().forEach((id, weight) -> result.merge(id, weight, Integer::sum));
+            }
+        }
+        return result;
+    }
+
+    private static <V> NavigableMap<String, V> prefixRange(NavigableMap<String, V> map, String prefix) {
+        return map.subMap(prefix, false, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * 中日韩二元组的反向键（第二个字在前），其他词项返回 null
+     */
+    private static String secondFirstKey(String term) {
+        if (term.codePointCount(0, term.length()) != 2 || !isCjk(term.codePointAt(0))) {
+            return null;
+        }
+        int split = term.offsetByCodePoints(0, 1);
+        return term.substring(split) + term.substring(0, split);
+    }
+
+    private Map<String, Integer> collectTerms(Comic comic, List<String> tagNames) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, comic.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, comic.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(terms, comic.getDescription(), DESCRIPTION_WEIGHT);
+        for (String tagName : tagNames) {
+            addTerms(terms, tagName, TAG_WEIGHT);
+        }
+        return terms;
+    }
+
+    private void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void applyIndex(Long comicId, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(comicId);
+            for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> {
+                    String key = secondFirstKey(term);
+                    if (key != null) {
+                        bigramsBySecond.put(key, term);
+                    }
+                    return new HashMap<>();
+                }).put(comicId, entry.getValue());
+            }
+            documentTerms.put(comicId, new HashSet<>(terms.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTerms(Long comicId) {
+        Set<String> terms = documentTerms.remove(comicId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(comicId);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                    String key = secondFirstKey(term);
+                    if (key != null) {
+                        bigramsBySecond.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,72 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 分块上传暂存区中已接收完整的文件，以 MultipartFile 的形式交给 ComicService.uploadComic；
+ * 内容类型按原文件名推断，和表单上传一样由 StorageService 校验
+ */
+class StagedMultipartFile implements MultipartFile {
+    private final String name;
+    private final String originalFilename;
+    private final Path file;
+
+    StagedMultipartFile(String name, String originalFilename, Path file) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return MediaTypeFactory.getMediaType(originalFilename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(file);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(file, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
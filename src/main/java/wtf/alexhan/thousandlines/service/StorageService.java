@@ -1,35 +1,515 @@
 package wtf.alexhan.thousandlines.service;
 
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
+@Timed("storage.service")
 public class StorageService {
+    private static final Logger log = LoggerFactory.getLogger(StorageService.class);
 
     @Value("${app.upload-dir}")
     private String uploadDir;
 
+    // 漫画目录中记录每页对应内容键的清单文件，删除漫画时据此释放引用
+    private static final String PAGE_BLOBS_FILE = ".blobs";
+    // 原始页面文件名，衍生图为 {页码}@{宽度}.jpg
+    private static final Pattern PAGE_FILE = Pattern.compile("\\d{1,6}\\.jpg");
+    private static final Pattern VARIANT_FILE = Pattern.compile("(\\d{1,6})@(\\d{2,5})\\.jpg");
+    private static final int FOLDER_LOCK_STRIPES = 64;
+
+    private final BlobStore blobStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ComicPackStore comicPackStore;
+    private final ExecutorService pageWriteExecutor;
+    private final DistributionSummary avatarBytesWritten;
+
+    // 打包和删除同一个漫画目录互斥：两者都会读取 .blobs 清单并释放引用，并发执行会重复释放
+    private final ReentrantLock[] folderLocks = new ReentrantLock[FOLDER_LOCK_STRIPES];
+
+    public StorageService(BlobStore blobStore, ImageDerivativeService imageDerivativeService,
+                          ComicPackStore comicPackStore,
+                          @Qualifier("pageWriteExecutor") ExecutorService pageWriteExecutor,
+                          MeterRegistry meterRegistry) {
+        this.blobStore = blobStore;
+        this.imageDerivativeService = imageDerivativeService;
+        this.comicPackStore = comicPackStore;
+        this.pageWriteExecutor = pageWriteExecutor;
+        this.avatarBytesWritten = DistributionSummary.builder("storage.bytes.written").baseUnit("bytes")
+                .tag("kind", "avatar").register(meterRegistry);
+        for (int i = 0; i < folderLocks.length; i++) {
+            folderLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 保存封面，返回内容寻址路径（内容不变路径就不变，可以永久缓存）
+     * 缩略图等衍生尺寸由后台任务调用 generateDerivatives 生成
+     */
     public String storeCoverImage(MultipartFile file) throws IOException {
         if (!isJpgFile(file)) {
             throw new IllegalArgumentException("封面图片必须是 JPG 格式");
         }
-        return storeFile(file, "covers");
+        return blobStore.relativePath(putJpeg(file));
     }
 
-    public String storeComicPage(MultipartFile file, String comicFolder) throws IOException {
-        if (!isJpgFile(file)) {
-            throw new IllegalArgumentException("漫画页面必须是 JPG 格式");
+    /**
+     * 释放 storeCoverImage 返回的文件；旧的非内容寻址路径不做处理
+     */
+    public void releaseFile(String relativePath) throws IOException {
+        String key = blobStore.keyOf(relativePath);
+        if (key != null) {
+            blobStore.release(key);
+        }
+    }
+
+    /**
+     * 并行保存一整部漫画的页面：内容并行写入 BlobStore，全部成功后交给 assembleComicPages 组装目录；
+     * 任一页失败则释放已保存的内容
+     *
+     * @return 实际保存的页数
+     */
+    public int storeComicPages(MultipartFile[] pages, String comicFolder) throws IOException {
+        List<MultipartFile> validPages = new ArrayList<>();
+        for (MultipartFile page : pages) {
+            if (page != null && !page.isEmpty()) {
+                if (!isJpgFile(page)) {
+                    throw new IllegalArgumentException("漫画页面必须是 JPG 格式");
+                }
+                validPages.add(page);
+            }
+        }
+        if (validPages.isEmpty()) {
+            throw new IllegalArgumentException("请至少上传一页漫画");
+        }
+
+        String[] keys = new String[validPages.size()];
+        AtomicBoolean abort = new AtomicBoolean();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < validPages.size(); i++) {
+                int index = i;
+                MultipartFile page = validPages.get(i);
+                futures.add(pageWriteExecutor.submit(() -> {
+                    if (!abort.get()) {
+                        keys[index] = putJpeg(page);
+                    }
+                    return null;
+                }));
+            }
+            awaitAll(futures, abort);
+        } catch (IOException | RuntimeException e) {
+            releaseAll(keys);
+            throw e;
+        }
+        // 组装失败时由 assembleComicPages 释放全部内容
+        return assembleComicPages(Arrays.asList(keys), comicFolder);
+    }
+
+    /**
+     * 等全部任务结束才返回：一页失败后还没开始的任务通过 abort 直接跳过，已经在写的任务要等它写完，
+     * 否则调用方释放内容之后，后台线程还可能写入新的内容，引用就泄漏了
+     */
+    private void awaitAll(List<Future<?>> futures, AtomicBoolean abort) throws IOException {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    abort.set(true);
+                    if (failure == null) {
+                        failure = e;
+                    }
+                } catch (ExecutionException e) {
+                    abort.set(true);
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof InterruptedException) {
+            throw new IOException("漫画页面保存被中断", failure);
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new IOException("漫画页面保存失败", failure);
+    }
+
+    /**
+     * 校验 JPG 文件头后把内容流式写入 BlobStore
+     */
+    private String putJpeg(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return storePageContent(in, file.getOriginalFilename());
+        }
+    }
+
+    /**
+     * 校验 JPG 文件头后把一页内容流式写入 BlobStore（不关闭输入流），返回内容键；
+     * 之后交给 assembleComicPages 组装，或由调用方通过 releasePageContent 释放
+     */
+    public String storePageContent(InputStream in, String name) throws IOException {
+        byte[] header = in.readNBytes(3);
+        if (header.length < 3 || (header[0] & 0xFF) != 0xFF || (header[1] & 0xFF) != 0xD8 || (header[2] & 0xFF) != 0xFF) {
+            throw new IllegalArgumentException("文件不是有效的 JPG 图片: " + name);
+        }
+        return blobStore.put(new SequenceInputStream(new ByteArrayInputStream(header), in), ".jpg");
+    }
+
+    /**
+     * 用已写入 BlobStore 的页面组装漫画目录：按给定顺序链接为 1.jpg..N.jpg，
+     * 写入清单后原子地移动到正式目录。内容引用转归漫画目录所有，失败时全部释放
+     *
+     * @return 页数
+     */
+    public int assembleComicPages(List<String> keys, String comicFolder) throws IOException {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("请至少上传一页漫画");
+        }
+
+        Path comicsPath = Paths.get(uploadDir, "comics");
+        Path stagingPath = comicsPath.resolve(".staging-" + comicFolder);
+        Path targetPath = comicsPath.resolve(comicFolder);
+        String[] ownedKeys = keys.toArray(new String[0]);
+        try {
+            Files.createDirectories(stagingPath);
+            for (int i = 0; i < ownedKeys.length; i++) {
+                blobStore.linkTo(ownedKeys[i], stagingPath.resolve((i + 1) + ".jpg"));
+            }
+
+            writePageBlobs(stagingPath, ownedKeys);
+            forceDirectory(stagingPath);
+            Files.move(stagingPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(comicsPath);
+        } catch (IOException | RuntimeException e) {
+            releaseAll(ownedKeys);
+            deleteRecursively(stagingPath);
+            throw e;
+        }
+        return ownedKeys.length;
+    }
+
+    /**
+     * 以某一页的内容作为封面（封面单独持有一次引用），返回封面路径
+     */
+    public String storeCoverFromPage(String key) throws IOException {
+        String coverKey;
+        try (InputStream in = Files.newInputStream(blobStore.resolve(key))) {
+            coverKey = blobStore.put(in, ".jpg");
+        }
+        return blobStore.relativePath(coverKey);
+    }
+
+    /**
+     * 为封面和全部页面生成衍生尺寸（已存在的跳过，可重复执行）；
+     * 已打包的漫画只处理封面，打包前已补齐页面的衍生图，缺失的尺寸访问时按需生成
+     */
+    public void generateDerivatives(String coverPath, String folderName) throws IOException {
+        Path cover = coverFile(coverPath);
+        if (cover != null) {
+            imageDerivativeService.generateAll(cover);
+        }
+        for (Path page : loosePageFiles(folderName)) {
+            imageDerivativeService.generateAll(page);
+        }
+    }
+
+    /**
+     * 漫画的原始页面文件名（1.jpg..N.jpg，不含衍生图），按页码排序；目录和打包两种格式都支持
+     */
+    public List<String> comicPageNames(String folderName) throws IOException {
+        if (folderName == null) {
+            return List.of();
+        }
+        // 先看打包文件：打包完成后才删除原目录，删除过程中列目录会得到不完整的结果
+        ComicPack pack = comicPackStore.open(folderName);
+        if (pack != null) {
+            return pack.names().stream()
+                    .filter(name -> PAGE_FILE.matcher(name).matches())
+                    .sorted(Comparator.comparingInt(StorageService::pageNumber))
+                    .toList();
+        }
+        return loosePageFiles(folderName).stream().map(page -> page.getFileName().toString()).toList();
+    }
+
+    /**
+     * 读取漫画中的一个文件（页面或衍生图），不存在时返回 null
+     */
+    public InputStream openComicFile(String folderName, String name) throws IOException {
+        Path file = Paths.get(uploadDir, "comics", folderName, name);
+        if (Files.isRegularFile(file)) {
+            return Files.newInputStream(file);
+        }
+        ComicPack pack = comicPackStore.open(folderName);
+        return pack != null ? pack.openStream(name) : null;
+    }
+
+    /**
+     * 漫画中一个文件的字节数，不存在时返回 -1
+     */
+    public long comicFileSize(String folderName, String name) throws IOException {
+        Path file = Paths.get(uploadDir, "comics", folderName, name);
+        if (Files.isRegularFile(file)) {
+            return Files.size(file);
+        }
+        ComicPack pack = comicPackStore.open(folderName);
+        ComicPack.Entry entry = pack != null ? pack.entry(name) : null;
+        return entry != null ? entry.length() : -1;
+    }
+
+    /**
+     * 页面文件名到内容键的对应关系（来自 .blobs 清单，目录和打包两种格式都支持）；
+     * 内容寻址之前上传的漫画没有清单，返回空
+     */
+    public Map<String, String> comicPageKeys(String folderName) throws IOException {
+        Map<String, String> keys = new LinkedHashMap<>();
+        InputStream manifest = openComicFile(folderName, PAGE_BLOBS_FILE);
+        if (manifest == null) {
+            return keys;
+        }
+        try (manifest) {
+            for (String line : new String(manifest.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2) {
+                    keys.put(parts[0], parts[1]);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 把漫画目录打包为单个文件（见 ComicPack），成功后删除原目录
+     * 页面内容复制进打包文件，漫画目录持有的内容引用随之释放；已打包或没有页面的目录不处理
+     *
+     * @return 是否完成打包
+     */
+    public boolean packComicFolder(String folderName) throws IOException {
+        ReentrantLock lock = folderLock(folderName);
+        lock.lock();
+        try {
+            return packLocked(folderName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean packLocked(String folderName) throws IOException {
+        Path comicsPath = Paths.get(uploadDir, "comics");
+        Path folder = comicsPath.resolve(folderName);
+        Path packFile = comicPackStore.packFile(folderName);
+        // 漫画已删除或已打包
+        if (Files.exists(packFile) || loosePageFiles(folderName).isEmpty()) {
+            return false;
+        }
+
+        Map<String, Path> files = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.list(folder)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(file -> isPackable(file.getFileName().toString()))
+                    .sorted(Comparator.comparing(file -> packOrder(file.getFileName().toString())))
+                    .forEach(file -> files.put(file.getFileName().toString(), file));
+        }
+        ComicPack.write(files, packFile);
+        forceDirectory(comicsPath);
+        comicPackStore.invalidate(folderName);
+
+        releaseAll(claimPageBlobKeys(folder).toArray(new String[0]));
+        deleteRecursively(folder);
+        return true;
+    }
+
+    /**
+     * 打包的文件：页面、衍生图和 .blobs 清单，不含生成中的临时文件
+     */
+    private static boolean isPackable(String name) {
+        return name.equals(PAGE_BLOBS_FILE) || PAGE_FILE.matcher(name).matches() || VARIANT_FILE.matcher(name).matches();
+    }
+
+    /**
+     * 打包顺序：清单在前，然后是原图，再按宽度分组的衍生图，同组内按页码，
+     * 阅读器顺序翻页时读取的是连续区域
+     */
+    private static String packOrder(String name) {
+        if (name.equals(PAGE_BLOBS_FILE)) {
+            return "";
+        }
+        Matcher variant = VARIANT_FILE.matcher(name);
+        if (variant.matches()) {
+            return String.format("%05d-%06d", Integer.parseInt(variant.group(2)), Integer.parseInt(variant.group(1)));
+        }
+        return String.format("%05d-%06d", 0, pageNumber(name));
+    }
+
+    /**
+     * 漫画目录中的原始页面文件，按页码排序；未打包时才有
+     */
+    private List<Path> loosePageFiles(String folderName) throws IOException {
+        if (folderName == null) {
+            return List.of();
+        }
+        Path folder = Paths.get(uploadDir, "comics", folderName);
+        if (!Files.isDirectory(folder)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(file -> PAGE_FILE.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingInt(file -> pageNumber(file.getFileName().toString())))
+                    .toList();
+        }
+    }
+
+    /**
+     * 封面路径对应的本地文件，不存在时返回 null
+     */
+    public Path coverFile(String coverPath) {
+        if (coverPath == null || coverPath.isEmpty()) {
+            return null;
+        }
+        String key = blobStore.keyOf(coverPath);
+        Path file = key != null ? blobStore.resolve(key) : Paths.get(uploadDir).resolve(coverPath).normalize();
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private static int pageNumber(String name) {
+        return Integer.parseInt(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * 释放 storePageContent 保存、但没有组装进漫画目录的页面
+     */
+    public void releasePageContent(List<String> keys) {
+        releaseAll(keys.toArray(new String[0]));
+    }
+
+    private void writePageBlobs(Path folder, String[] keys) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            content.append(i + 1).append(".jpg ").append(keys[i]).append('\n');
+        }
+        Path file = folder.resolve(PAGE_BLOBS_FILE);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 取走目录的 .blobs 清单并返回其中的内容键：清单先原子地改名再读取，
+     * 同时打包和删除（包括另一个进程中的迁移工具）时只有一方拿到，引用不会被释放两次。
+     * 清单在释放引用之前删除，中途崩溃最多泄漏引用，不会重复释放别的漫画共享的内容
+     */
+    private List<String> claimPageBlobKeys(Path folder) throws IOException {
+        Path claimed = folder.resolve(PAGE_BLOBS_FILE + "." + UUID.randomUUID());
+        try {
+            Files.move(folder.resolve(PAGE_BLOBS_FILE), claimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(claimed, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2) {
+                keys.add(parts[1]);
+            }
+        }
+        Files.delete(claimed);
+        forceDirectory(folder);
+        return keys;
+    }
+
+    private void releaseAll(String[] keys) {
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            try {
+                blobStore.release(key);
+            } catch (IOException | RuntimeException e) {
+                log.warn("释放内容失败: {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * fsync 目录本身，保证新建和重命名的目录项落盘；不支持的平台上忽略
+     */
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("目录 fsync 不受支持: {}", directory);
+        }
+    }
+
+    private void deleteRecursively(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> -a.compareTo(b))
+                    .forEach(path -> {
+                        try {
+                            Files.delete(path);
+                        } catch (IOException e) {
+                            log.warn("清理文件失败: {}", path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("清理目录失败: {}", root, e);
         }
-        return storeFile(file, "comics/" + comicFolder);
     }
 
     public String storeAvatarImage(MultipartFile file, String username) throws IOException {
@@ -56,31 +536,41 @@ public class StorageService {
         }
 
         Path filePath = uploadPath.resolve(customFilename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        long written = Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        avatarBytesWritten.record(written);
 
         return subDir + "/" + customFilename;
     }
 
     private boolean isJpgFile(MultipartFile file) {
-        return file.getContentType().equals("image/jpeg");
+        return "image/jpeg".equals(file.getContentType());
     }
 
-    private String storeFile(MultipartFile file, String subDir) throws IOException {
-        String filename = file.getOriginalFilename();
-        Path uploadPath = Paths.get(uploadDir, subDir);
-
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    /**
+     * 删除漫画目录（或打包文件），释放页面持有的内容引用；与打包互斥
+     */
+    public void deleteFolder(String folderName) throws IOException {
+        ReentrantLock lock = folderLock(folderName);
+        lock.lock();
+        try {
+            deleteLocked(folderName);
+        } finally {
+            lock.unlock();
         }
-
-        Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-        return subDir + "/" + filename;
     }
 
-    public void deleteFolder(String folderName) throws IOException {
+    private void deleteLocked(String folderName) throws IOException {
         Path folderPath = Paths.get(uploadDir, "comics", folderName);
+
+        // 已打包的漫画只需删除一个文件；内容引用在打包时已经释放
+        comicPackStore.invalidate(folderName);
+        Files.deleteIfExists(comicPackStore.packFile(folderName));
+
+        // 释放页面对应的内容引用
+        for (String key : claimPageBlobKeys(folderPath)) {
+            blobStore.release(key);
+        }
+
         if (Files.exists(folderPath)) {
             Files.walk(folderPath)
                     .sorted((a, b) -> -a.compareTo(b))
@@ -93,4 +583,8 @@ public class StorageService {
                     });
         }
     }
-}
\ No newline at end of file
+
+    private ReentrantLock folderLock(String folderName) {
+        return folderLocks[Math.floorMod(folderName.hashCode(), folderLocks.length)];
+    }
+}
@@ -0,0 +1,114 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import wtf.alexhan.thousandlines.model.Tag;
+import wtf.alexhan.thousandlines.repository.TagRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 标签字典：缓存标签名到ID的映射，整批解析标签，缺失的标签一次批量插入
+ */
+@Service
+public class TagDictionaryService {
+
+    private final TagRepository tagRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // 标签不会改名也不会删除，缓存不需要失效
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+
+    public TagDictionaryService(TagRepository tagRepository, JdbcTemplate jdbcTemplate) {
+        this.tagRepository = tagRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 把一组标签名解析为标签，不存在的自动创建；需要在事务中调用
+     * 缓存命中时不查询数据库，否则最多一次 IN 查询 + 一次批量插入 + 一次 IN 查询
+     */
+    public Set<Tag> resolve(Collection<String> tagNames) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String tagName : tagNames) {
+            String name = tagName == null ? "" : tagName.trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+
+        Map<String, Long> resolved = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Long id = idsByName.get(name);
+            if (id != null) {
+                resolved.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Long> existing = match(missing, tagRepository.findByNameIn(missing));
+            idsByName.putAll(existing);
+            resolved.putAll(existing);
+            missing.removeAll(existing.keySet());
+        }
+
+        if (!missing.isEmpty()) {
+            // 并发上传同名新标签时，唯一索引冲突的一方直接忽略
+            jdbcTemplate.batchUpdate("INSERT IGNORE INTO tags (name, created_at) VALUES (?, NOW())",
+                    missing, missing.size(), (ps, name) -> ps.setString(1, name));
+            Map<String, Long> created = match(missing, tagRepository.lockByNameIn(missing));
+            if (created.size() < missing.size()) {
+                throw new RuntimeException("创建标签失败");
+            }
+            resolved.putAll(created);
+            // 新插入的标签在事务提交后才写入缓存，回滚时不会留下不存在的ID
+            TransactionHooks.afterCommit(() -> idsByName.putAll(created));
+        }
+
+        // 不区分大小写的重复名称会对应同一个ID，按ID去重
+        Map<Long, Tag> tags = new LinkedHashMap<>();
+        resolved.forEach((name, id) -> tags.putIfAbsent(id, reference(id, name)));
+        return new HashSet<>(tags.values());
+    }
+
+    /**
+     * 按请求的名称对应查询结果；数据库排序规则不区分大小写时，"Action" 和 "action" 是同一个标签
+     */
+    private static Map<String, Long> match(List<String> requested, List<Tag> found) {
+        Map<String, Long> exact = new HashMap<>();
+        for (Tag tag : found) {
+            exact.put(tag.getName(), tag.getId());
+        }
+        Map<String, Long> result = new HashMap<>();
+        for (String name : requested) {
+            Long id = exact.get(name);
+            if (id == null) {
+                for (Tag tag : found) {
+                    if (tag.getName().equalsIgnoreCase(name)) {
+                        id = tag.getId();
+                        break;
+                    }
+                }
+            }
+            if (id != null) {
+                result.put(name, id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只带ID和名称的标签引用，用于设置漫画的标签关联，不需要从数据库加载
+     */
+    private static Tag reference(Long id, String name) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setName(name);
+        return tag;
+    }
+
+}
@@ -0,0 +1,141 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.Tag;
+import wtf.alexhan.thousandlines.model.TagUsage;
+import wtf.alexhan.thousandlines.repository.TagUsageRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 热门标签：tag_usage 表保存每个标签的使用次数，内存中按次数排好序，取前 K 个只需 O(K)
+ */
+@Service
+public class TagUsageService {
+    private static final Logger log = LoggerFactory.getLogger(TagUsageService.class);
+
+    // 次数降序，次数相同按名称排序
+    private static final Comparator<TagCount> RANKING = Comparator.comparingLong(TagCount::count).reversed()
+            .thenComparing(TagCount::name)
+            .thenComparing(TagCount::tagId);
+
+    private final TagUsageRepository tagUsageRepository;
+
+    // 标签ID -> 当前计数，以及按计数排序的视图；两者一起更新
+    private final Map<Long, TagCount> counts = new HashMap<>();
+    private final NavigableSet<TagCount> ranking = new TreeSet<>(RANKING);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TagUsageService(TagUsageRepository tagUsageRepository) {
+        this.tagUsageRepository = tagUsageRepository;
+    }
+
+    /**
+     * 启动后加载计数表；表为空时先从关联表重算一次
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        if (tagUsageRepository.count() == 0) {
+            int rows = tagUsageRepository.rebuildFromComicTags();
+            log.info("标签计数表为空，已从漫画标签重算 {} 个标签", rows);
+        }
+
+        lock.writeLock().lock();
+        try {
+            counts.clear();
+            ranking.clear();
+            for (TagUsage usage : tagUsageRepository.findAll()) {
+                put(new TagCount(usage.getTagId(), usage.getTagName(), usage.getComicCount()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 漫画的标签集合从 before 变为 after：在当前事务中更新计数表，提交后更新内存排行
+     */
+    public void recordChange(Collection<Tag> before, Collection<Tag> after) {
+        Map<Long, String> removed = byId(before);
+        Map<Long, String> added = byId(after);
+        // 两边都有的标签计数不变
+        Set<Long> unchanged = new HashSet<>(removed.keySet());
+        unchanged.retainAll(added.keySet());
+        removed.keySet().removeAll(unchanged);
+        added.keySet().removeAll(unchanged);
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<Long, String> entry : added.entrySet()) {
+            tagUsageRepository.increment(entry.getKey(), entry.getValue());
+        }
+        for (Long tagId : removed.keySet()) {
+            tagUsageRepository.decrement(tagId);
+        }
+
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                added.forEach((tagId, name) -> adjust(tagId, name, 1));
+                removed.forEach((tagId, name) -> adjust(tagId, name, -1));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 使用次数最多的前 limit 个标签，每项为 {标签名, 次数}
+     */
+    public List<Object[]> topTags(int limit) {
+        List<Object[]> result = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        lock.readLock().lock();
+        try {
+            for (TagCount tag : ranking) {
+                if (result.size() >= limit || tag.count() <= 0) {
+                    break;
+                }
+                result.add(new Object[]{tag.name(), tag.count()});
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void adjust(Long tagId, String name, long delta) {
+        TagCount current = counts.get(tagId);
+        long count = Math.max(0, (current == null ? 0 : current.count()) + delta);
+        if (current != null) {
+            ranking.remove(current);
+        }
+        put(new TagCount(tagId, current == null ? name : current.name(), count));
+    }
+
+    private void put(TagCount tag) {
+        counts.put(tag.tagId(), tag);
+        ranking.add(tag);
+    }
+
+    private static Map<Long, String> byId(Collection<Tag> tags) {
+        Map<Long, String> result = new HashMap<>();
+        if (tags != null) {
+            for (Tag tag : tags) {
+                result.put(tag.getId(), tag.getName());
+            }
+        }
+        return result;
+    }
+
+    private record TagCount(Long tagId, String name, long count) {
+    }
+}
@@ -0,0 +1,17 @@
+package wtf.alexhan.thousandlines.service;
+
+/**
+ * 分块上传的偏移量与服务端已接收的字节数不一致，请求应以 409 拒绝，客户端按当前偏移量续传
+ */
+public class UploadOffsetConflictException extends RuntimeException {
+    private final long currentOffset;
+
+    public UploadOffsetConflictException(long currentOffset) {
+        super("上传偏移量不一致，当前已接收 " + currentOffset + " 字节");
+        this.currentOffset = currentOffset;
+    }
+
+    public long getCurrentOffset() {
+        return currentOffset;
+    }
+}
@@ -3,7 +3,6 @@ package wtf.alexhan.thousandlines.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import wtf.alexhan.thousandlines.dto.RegRequest;
@@ -12,6 +11,7 @@ import wtf.alexhan.thousandlines.repository.*;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class UserService {
@@ -19,13 +19,14 @@ public class UserService {
     private final UserRepository userRepository;
     private final InviteCodeRepository inviteCodeRepository;
     private final UsedInviteCodeRepository usedInviteCodeRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
 
-    public UserService(UserRepository userRepository, InviteCodeRepository inviteCodeRepository, UsedInviteCodeRepository usedInviteCodeRepository) {
+    public UserService(UserRepository userRepository, InviteCodeRepository inviteCodeRepository, UsedInviteCodeRepository usedInviteCodeRepository,
+                       PasswordHashingService passwordHashingService) {
         this.userRepository = userRepository;
         this.inviteCodeRepository = inviteCodeRepository;
         this.usedInviteCodeRepository = usedInviteCodeRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.passwordHashingService = passwordHashingService;
     }
 
     public Optional<User> findByUsername(String username) {
@@ -33,7 +34,35 @@ public class UserService {
     }
 
     public boolean validatePassword(String rawPassword, String encodedPassword) {
-        return passwordEncoder.matches(rawPassword, encodedPassword);
+        return passwordHashingService.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * 异步校验密码，在哈希线程池中执行，不占用请求线程
+     */
+    public CompletableFuture<Boolean> validatePasswordAsync(String rawPassword, String encodedPassword) {
+        return passwordHashingService.matchesAsync(rawPassword, encodedPassword);
+    }
+
+    /**
+     * 登录成功后，如果密码哈希的强度低于当前配置，在后台用新强度重新计算并保存
+     */
+    public void upgradePasswordHashIfNeeded(User user, String rawPassword) {
+        String oldHash = user.getPassword();
+        if (!passwordHashingService.needsUpgrade(oldHash)) {
+            return;
+        }
+        passwordHashingService.encodeAsync(rawPassword)
+                .thenAccept(newHash -> {
+                    if (userRepository.replacePasswordHash(user.getId(), oldHash, newHash) > 0) {
+                        user.setPassword(newHash);
+                    }
+                })
+                .exceptionally(e -> {
+                    // 线程池繁忙时跳过，下次登录再升级
+                    log.debug("密码哈希升级跳过: {}", user.getUsername(), e);
+                    return null;
+                });
     }
 
     public void createCreatorUser(String username, String password, String email) {
@@ -43,7 +72,7 @@ public class UserService {
 
         User user = new User();
         user.setUsername(username);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHashingService.encode(password));
         user.setEmail(email);
         user.setRole(UserRole.CREATOR);
 
@@ -80,7 +109,7 @@ public class UserService {
 
         User user = new User();
         user.setUsername(regRequest.getUsername());
-        user.setPassword(passwordEncoder.encode(regRequest.getPassword()));
+        user.setPassword(passwordHashingService.encode(regRequest.getPassword()));
         user.setEmail(regRequest.getEmail());
         user.setRole(role);
 
@@ -0,0 +1,95 @@
+package wtf.alexhan.thousandlines.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 浏览量写缓冲：浏览先累加到内存计数器，再定时批量写回数据库
+ * 写回时把计数从表中整条取出，表里只保留上次写回之后有浏览的漫画
+ */
+@Service
+public class ViewCountService {
+    private static final Logger log = LoggerFactory.getLogger(ViewCountService.class);
+
+    private static final String FLUSH_SQL = "UPDATE comics SET view_count = view_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    public ViewCountService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 记录一次浏览
+     */
+    public void increment(Long comicId) {
+        // 累加和写回时的取出都是对同一条目的原子操作，取出的同时到达的浏览不会丢失
+        pending.merge(comicId, 1L, Long::sum);
+    }
+
+    /**
+     * 获取尚未写回数据库的浏览增量
+     */
+    public long getPendingCount(Long comicId) {
+        return pending.getOrDefault(comicId, 0L);
+    }
+
+    /**
+     * 丢弃漫画的未写回增量（漫画删除时调用）
+     */
+    public void discard(Long comicId) {
+        pending.remove(comicId);
+    }
+
+    /**
+     * 定时把累计的增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${app.view-count.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Long comicId : pending.keySet()) {
+            Long delta = pending.remove(comicId);
+            if (delta != null) {
+                batch.add(new Object[]{delta, comicId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+        } catch (RuntimeException e) {
+            // 写回失败时把增量放回计数器，等待下一次刷新
+            log.warn("浏览量写回失败，{} 条增量将在下次重试", batch.size(), e);
+            for (Object[] row : batch) {
+                pending.merge((Long) row[1], (Long) row[0], Long::sum);
+            }
+        }
+    }
+
+    /**
+     * 有未写回增量的漫画数
+     */
+    int pendingComics() {
+        return pending.size();
+    }
+
+    /**
+     * 应用关闭前写回剩余的增量
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
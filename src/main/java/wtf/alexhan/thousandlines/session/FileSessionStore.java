@@ -0,0 +1,137 @@
+package wtf.alexhan.thousandlines.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+/**
+ * 基于本地文件的会话存储：每个会话一个文件，前 8 字节为过期时间（毫秒），其后是会话数据
+ * 适合单机和测试；写入先写临时文件再原子替换，读到的总是完整的数据
+ * 替换和删除按会话ID分段加锁：删除过期文件前在锁内重新确认过期时间，不会删掉刚续期写入的会话
+ */
+public class FileSessionStore implements SessionStore {
+
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private static final String SUFFIX = ".session";
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileSessionStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public byte[] load(String sessionId) throws IOException {
+        Path file = file(sessionId);
+        if (file == null) {
+            return null;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (content.length < Long.BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        long now = System.currentTimeMillis();
+        if (buffer.getLong() <= now) {
+            deleteIfExpired(sessionId, file, now);
+            return null;
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Override
+    public void save(String sessionId, byte[] data, Instant expiresAt) throws IOException {
+        Path file = file(sessionId);
+        if (file == null) {
+            throw new IOException("非法的会话ID");
+        }
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES + data.length);
+        content.putLong(expiresAt.toEpochMilli()).put(data);
+
+        Path temp = Files.createTempFile(directory, ".write-", ".tmp");
+        try {
+            Files.write(temp, content.array());
+            synchronized (lock(sessionId)) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String sessionId) throws IOException {
+        Path file = file(sessionId);
+        if (file != null) {
+            synchronized (lock(sessionId)) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Override
+    public int purgeExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String sessionId = fileName.substring(0, fileName.length() - SUFFIX.length());
+                if (readExpiry(file) <= now && deleteIfExpired(sessionId, file, now)) {
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * 在会话锁内重新读取过期时间再删除：第一次读取之后会话可能已经被续期写入
+     */
+    private boolean deleteIfExpired(String sessionId, Path file, long now) throws IOException {
+        synchronized (lock(sessionId)) {
+            return readExpiry(file) <= now && Files.deleteIfExists(file);
+        }
+    }
+
+    Object lock(String sessionId) {
+        return locks[Math.floorMod(sessionId.hashCode(), locks.length)];
+    }
+
+    private long readExpiry(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(Long.BYTES);
+            return header.length < Long.BYTES ? 0 : ByteBuffer.wrap(header).getLong();
+        } catch (IOException e) {
+            // 读不到的文件视为过期
+            return 0;
+        }
+    }
+
+    private Path file(String sessionId) {
+        if (sessionId == null || !SESSION_ID.matcher(sessionId).matches()) {
+            return null;
+        }
+        return directory.resolve(sessionId + SUFFIX);
+    }
+}
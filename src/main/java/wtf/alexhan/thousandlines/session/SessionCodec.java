@@ -0,0 +1,154 @@
+package wtf.alexhan.thousandlines.session;
+
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.model.UserRole;
+
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会话的紧凑二进制编码：登录用户和常见的简单类型按字段直接写出，
+ * 其他可序列化对象才退回到 Java 序列化
+ */
+public final class SessionCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_SESSION_USER = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_SERIALIZED = 6;
+
+    private static final UserRole[] ROLES = UserRole.values();
+
+    private SessionCodec() {
+    }
+
+    /**
+     * 会话解码后的内容
+     */
+    public record Snapshot(String id, Instant creationTime, Instant lastAccessedTime,
+                           Duration maxInactiveInterval, Map<String, Object> attributes) {
+    }
+
+    public static byte[] encode(Snapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(snapshot.id());
+            out.writeLong(snapshot.creationTime().toEpochMilli());
+            out.writeLong(snapshot.lastAccessedTime().toEpochMilli());
+            out.writeInt((int) snapshot.maxInactiveInterval().toSeconds());
+            out.writeShort(snapshot.attributes().size());
+            for (Map.Entry<String, Object> attribute : snapshot.attributes().entrySet()) {
+                out.writeUTF(attribute.getKey());
+                writeValue(out, attribute.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Snapshot decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("不支持的会话数据版本: " + version);
+            }
+            String id = in.readUTF();
+            Instant creationTime = Instant.ofEpochMilli(in.readLong());
+            Instant lastAccessedTime = Instant.ofEpochMilli(in.readLong());
+            Duration maxInactiveInterval = Duration.ofSeconds(in.readInt());
+            int count = in.readUnsignedShort();
+            Map<String, Object> attributes = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                attributes.put(in.readUTF(), readValue(in));
+            }
+            return new Snapshot(id, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof SessionUser user) {
+            out.writeByte(TYPE_SESSION_USER);
+            out.writeLong(user.id());
+            out.writeUTF(user.username());
+            out.writeByte(user.role() == null ? -1 : user.role().ordinal());
+            writeNullableString(out, user.avatarPath());
+        } else if (value instanceof String string) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF(string);
+        } else if (value instanceof Long number) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(number);
+        } else if (value instanceof Integer number) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt(number);
+        } else if (value instanceof Boolean flag) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(flag);
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(serialized)) {
+                objectOut.writeObject(value);
+            }
+            out.writeByte(TYPE_SERIALIZED);
+            out.writeInt(serialized.size());
+            serialized.writeTo(out);
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_SESSION_USER: {
+                long id = in.readLong();
+                String username = in.readUTF();
+                byte role = in.readByte();
+                String avatarPath = readNullableString(in);
+                return new SessionUser(id, username, role < 0 ? null : ROLES[role], avatarPath);
+            }
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_SERIALIZED: {
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("无法还原会话属性", e);
+                }
+            }
+            default:
+                throw new IOException("未知的会话属性类型: " + type);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
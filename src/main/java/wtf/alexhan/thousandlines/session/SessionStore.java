@@ -0,0 +1,30 @@
+package wtf.alexhan.thousandlines.session;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * 会话的字节存储：只负责按会话ID存取已编码的数据和过期时间
+ * 单机使用 FileSessionStore；多实例部署时可以用 Redis 等共享存储实现（GET / SET ... PXAT / DEL）
+ */
+public interface SessionStore {
+
+    /**
+     * 读取会话数据，不存在或已过期时返回 null
+     */
+    byte[] load(String sessionId) throws IOException;
+
+    /**
+     * 写入会话数据，到 expiresAt 后失效
+     */
+    void save(String sessionId, byte[] data, Instant expiresAt) throws IOException;
+
+    void delete(String sessionId) throws IOException;
+
+    /**
+     * 清理已过期的会话；自带过期机制的存储可以不实现
+     */
+    default int purgeExpired() throws IOException {
+        return 0;
+    }
+}
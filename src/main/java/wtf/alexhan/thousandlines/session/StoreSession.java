@@ -0,0 +1,236 @@
+package wtf.alexhan.thousandlines.session;
+
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 由 SessionStore 保存的会话：记录属性是否变化，只更新访问时间时可以少写几次存储
+ *
+ * 异步请求（如登录时在哈希线程里写入用户）可能在请求线程保存会话的同时修改属性，
+ * 所以访问都在锁内进行，并用版本号判断保存之后是否又有修改，避免把新的修改标记为已保存
+ */
+public class StoreSession implements Session {
+
+    private final MapSession delegate;
+    // 不用 synchronized，避免虚拟线程在锁内被固定
+    private final ReentrantLock lock = new ReentrantLock();
+    private String originalId;
+    private boolean isNew;
+    // 每次修改加一；savedVersion 是最近一次保存的快照对应的版本
+    private long version;
+    private long savedVersion;
+    private Instant persistedLastAccessedTime;
+
+    StoreSession(MapSession delegate, boolean isNew) {
+        this.delegate = delegate;
+        this.originalId = delegate.getId();
+        this.isNew = isNew;
+        this.version = isNew ? 1 : 0;
+        this.persistedLastAccessedTime = delegate.getLastAccessedTime();
+    }
+
+    /**
+     * 保存时的会话内容和对应的版本号
+     */
+    record Snapshot(SessionCodec.Snapshot data, long version) {
+    }
+
+    @Override
+    public String getId() {
+        lock.lock();
+        try {
+            return delegate.getId();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String changeSessionId() {
+        lock.lock();
+        try {
+            version++;
+            return delegate.changeSessionId();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T getAttribute(String attributeName) {
+        lock.lock();
+        try {
+            return delegate.getAttribute(attributeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+        lock.lock();
+        try {
+            return Set.copyOf(delegate.getAttributeNames());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+        lock.lock();
+        try {
+            version++;
+            delegate.setAttribute(attributeName, attributeValue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+        lock.lock();
+        try {
+            version++;
+            delegate.removeAttribute(attributeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        lock.lock();
+        try {
+            return delegate.getCreationTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+        lock.lock();
+        try {
+            delegate.setLastAccessedTime(lastAccessedTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+        lock.lock();
+        try {
+            return delegate.getLastAccessedTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+        lock.lock();
+        try {
+            version++;
+            delegate.setMaxInactiveInterval(interval);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+        lock.lock();
+        try {
+            return delegate.getMaxInactiveInterval();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isExpired() {
+        lock.lock();
+        try {
+            return delegate.isExpired();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在锁内复制当前内容，编码和写存储在锁外进行
+     */
+    Snapshot snapshot() {
+        lock.lock();
+        try {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (String name : delegate.getAttributeNames()) {
+                attributes.put(name, delegate.getAttribute(name));
+            }
+            return new Snapshot(new SessionCodec.Snapshot(delegate.getId(), delegate.getCreationTime(),
+                    delegate.getLastAccessedTime(), delegate.getMaxInactiveInterval(), attributes), version);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String getOriginalId() {
+        lock.lock();
+        try {
+            return originalId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isNew() {
+        lock.lock();
+        try {
+            return isNew;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isChanged() {
+        lock.lock();
+        try {
+            return version != savedVersion;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Instant getPersistedLastAccessedTime() {
+        lock.lock();
+        try {
+            return persistedLastAccessedTime;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记快照已保存；快照之后的修改仍算作未保存，由下一次保存写出
+     */
+    void markSaved(Snapshot saved) {
+        lock.lock();
+        try {
+            originalId = saved.data().id();
+            isNew = false;
+            savedVersion = Math.max(savedVersion, saved.version());
+            persistedLastAccessedTime = saved.data().lastAccessedTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package wtf.alexhan.thousandlines.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * 把会话编码后保存到 SessionStore 的 Spring Session 仓库，多个实例共享同一个存储即可共享登录状态
+ * 属性没有变化时，访问时间只在过去了超时时间的 1/touchDivisor 之后才写回，避免每个请求都写存储；
+ * 代价是空闲会话最多提前这么久失效
+ */
+public class StoreSessionRepository implements SessionRepository<StoreSession> {
+    private static final Logger log = LoggerFactory.getLogger(StoreSessionRepository.class);
+
+    private final SessionStore store;
+    private final Duration defaultMaxInactiveInterval;
+    private final int touchDivisor;
+
+    public StoreSessionRepository(SessionStore store, Duration defaultMaxInactiveInterval, int touchDivisor) {
+        this.store = store;
+        this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+        this.touchDivisor = Math.max(1, touchDivisor);
+    }
+
+    @Override
+    public StoreSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(defaultMaxInactiveInterval);
+        return new StoreSession(session, true);
+    }
+
+    @Override
+    public void save(StoreSession session) {
+        try {
+            if (!session.isNew() && !session.getId().equals(session.getOriginalId())) {
+                // 登录后更换了会话ID，删除旧ID对应的数据
+                store.delete(session.getOriginalId());
+            }
+            if (!session.isChanged() && !touchDue(session)) {
+                return;
+            }
+            StoreSession.Snapshot snapshot = session.snapshot();
+            SessionCodec.Snapshot data = snapshot.data();
+            store.save(data.id(), SessionCodec.encode(data), data.lastAccessedTime().plus(data.maxInactiveInterval()));
+            session.markSaved(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存会话失败", e);
+        }
+    }
+
+    @Override
+    public StoreSession findById(String id) {
+        try {
+            byte[] data = store.load(id);
+            if (data == null) {
+                return null;
+            }
+            SessionCodec.Snapshot snapshot = SessionCodec.decode(data);
+            MapSession session = new MapSession(snapshot.id());
+            session.setCreationTime(snapshot.creationTime());
+            session.setLastAccessedTime(snapshot.lastAccessedTime());
+            session.setMaxInactiveInterval(snapshot.maxInactiveInterval());
+            snapshot.attributes().forEach(session::setAttribute);
+            if (session.isExpired()) {
+                store.delete(id);
+                return null;
+            }
+            return new StoreSession(session, false);
+        } catch (IOException e) {
+            // 数据损坏或版本不兼容时当作会话不存在，用户重新登录即可
+            log.warn("读取会话失败: {}", id, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        try {
+            store.delete(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除会话失败", e);
+        }
+    }
+
+    /**
+     * 清理过期会话，由定时任务调用
+     */
+    public int purgeExpired() {
+        try {
+            return store.purgeExpired();
+        } catch (IOException e) {
+            log.warn("清理过期会话失败", e);
+            return 0;
+        }
+    }
+
+    private boolean touchDue(StoreSession session) {
+        Duration sincePersisted = Duration.between(session.getPersistedLastAccessedTime(), session.getLastAccessedTime());
+        return sincePersisted.compareTo(session.getMaxInactiveInterval().dividedBy(touchDivisor)) >= 0;
+    }
+}
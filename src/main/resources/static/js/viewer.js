@@ -3,8 +3,10 @@ class ComicViewer {
         this.comicId = comicId;
         this.comicFolder = comicFolder;
         this.totalPages = totalPages;
-        this.currentPage = 1;
+        this.currentPage = parseInt(new URL(window.location).searchParams.get('page'), 10) || 1;
+        this.manifest = null;
         this.imagesLoaded = new Set();
+        this.preloaded = new Set();
         this.readerElement = document.getElementById('comicReader');
         this.currentPageElement = document.getElementById('currentPage');
         this.totalPagesElement = document.getElementById('totalPages');
@@ -17,9 +19,35 @@ class ComicViewer {
     init() {
         this.totalPagesElement.textContent = this.totalPages;
         this.setupControls();
-        this.loadPage(this.currentPage);
-        this.preloadAdjacentPages();
         this.setupKeyboardControls();
+        // 清单已由服务端预加载（Link: rel=preload），拿到后再加载页面，图片地址与预加载的一致
+        this.loadManifest().finally(() => {
+            this.currentPage = Math.min(Math.max(this.currentPage, 1), Math.max(this.totalPages, 1));
+            this.loadPage(this.currentPage);
+            this.updateControls();
+            this.preloadAdjacentPages();
+        });
+    }
+
+    // 页面清单：每页的地址、尺寸和可用宽度；获取失败时按页码拼接地址
+    async loadManifest() {
+        try {
+            const response = await fetch(`/api/comics/${this.comicId}/manifest`);
+            if (!response.ok) {
+                return;
+            }
+            this.manifest = await response.json();
+            if (this.manifest.pages.length > 0) {
+                this.totalPages = this.manifest.pages.length;
+                this.totalPagesElement.textContent = this.totalPages;
+            }
+        } catch (e) {
+            this.manifest = null;
+        }
+    }
+
+    manifestPage(pageNumber) {
+        return this.manifest ? this.manifest.pages[pageNumber - 1] : null;
     }
 
     setupControls() {
@@ -88,7 +116,7 @@ class ComicViewer {
         `;
 
         const img = new Image();
-        img.src = `/uploads/comics/${this.comicFolder}/${pageNumber}.jpg`;
+        this.setPageSource(img, pageNumber);
         img.alt = `第 ${pageNumber} 页`;
         img.className = 'comic-page';
 
@@ -117,13 +145,14 @@ class ComicViewer {
         if (existingImg) {
             existingImg.classList.remove('loaded');
             setTimeout(() => {
-                existingImg.src = `/uploads/comics/${this.comicFolder}/${pageNumber}.jpg`;
+                this.setPageSource(existingImg, pageNumber);
                 existingImg.alt = `第 ${pageNumber} 页`;
                 setTimeout(() => existingImg.classList.add('loaded'), 100);
             }, 300);
         }
     }
 
+    // 用 <link rel="preload"> 预加载前后几页，翻页时不用等待冷请求
     preloadAdjacentPages() {
         const pagesToPreload = [];
 
@@ -140,12 +169,61 @@ class ComicViewer {
         }
 
         pagesToPreload.forEach(page => {
-            const img = new Image();
-            img.src = `/uploads/comics/${this.comicFolder}/${page}.jpg`;
-            img.onload = () => this.imagesLoaded.add(page);
+            if (this.preloaded.has(page)) {
+                return;
+            }
+            this.preloaded.add(page);
+            const source = this.pageSource(page);
+            const link = document.createElement('link');
+            link.rel = 'preload';
+            link.as = 'image';
+            link.href = source.src;
+            if (source.srcset) {
+                link.imageSrcset = source.srcset;
+                link.imageSizes = PAGE_SIZES;
+            }
+            link.onload = () => this.imagesLoaded.add(page);
+            document.head.appendChild(link);
         });
     }
 
+    pageUrl(pageNumber, width) {
+        return `/uploads/comics/${this.comicFolder}/${pageNumber}@${width}.jpg`;
+    }
+
+    // 有清单时用清单中的衍生图和原图（与服务端 Link 预加载的 imagesrcset 相同），
+    // 否则使用 720/1440 宽度的衍生图，由浏览器按屏幕选择
+    pageSource(pageNumber) {
+        const page = this.manifestPage(pageNumber);
+        if (!page) {
+            return {
+                src: this.pageUrl(pageNumber, 1440),
+                srcset: `${this.pageUrl(pageNumber, 720)} 720w, ${this.pageUrl(pageNumber, 1440)} 1440w`
+            };
+        }
+        const candidates = page.variants.map(variant => `${variant.url} ${variant.width}w`);
+        if (page.width > 0) {
+            candidates.push(`${page.url} ${page.width}w`);
+        }
+        return {src: page.url, srcset: candidates.join(', '), width: page.width, height: page.height};
+    }
+
+    setPageSource(img, pageNumber) {
+        const source = this.pageSource(pageNumber);
+        // 按清单中的尺寸预留高度，图片加载前页面不跳动
+        if (source.width > 0 && source.height > 0) {
+            img.width = source.width;
+            img.height = source.height;
+        }
+        if (source.srcset) {
+            img.sizes = PAGE_SIZES;
+            img.srcset = source.srcset;
+        } else {
+            img.removeAttribute('srcset');
+        }
+        img.src = source.src;
+    }
+
     updateControls() {
         this.prevBtn.disabled = this.currentPage === 1;
         this.nextBtn.disabled = this.currentPage === this.totalPages;
@@ -181,6 +259,9 @@ class ComicViewer {
     }
 }
 
+// 与服务端 ReaderPreloadHints.PAGE_SIZES 保持一致，预加载的图片才能被复用
+const PAGE_SIZES = '(max-width: 800px) 100vw, 960px';
+
 // 全局初始化函数
 function initViewer(comicId, comicFolder, totalPages) {
     window.comicViewer = new ComicViewer(comicId, comicFolder, totalPages);
@@ -0,0 +1,160 @@
+package wtf.alexhan.thousandlines.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.service.ComicService;
+
+import jakarta.servlet.http.Cookie;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 读写分离路由：主库和从库是两个独立的 H2 内存库，不做复制，
+ * 同一部漫画在两边写入不同的标题，通过读到的标题判断查询落在哪个库
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ReadWriteRoutingTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static Path workDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        workDir = Files.createTempDirectory("routing-test");
+        registry.add("spring.datasource.url", () -> PRIMARY_URL);
+        registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+        registry.add("spring.datasource.username", () -> "sa");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("app.datasource.replica.url", () -> REPLICA_URL);
+        registry.add("app.datasource.replica.driver-class-name", () -> "org.h2.Driver");
+        registry.add("app.datasource.replica.username", () -> "sa");
+        registry.add("app.datasource.replica.password", () -> "");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.H2Dialect");
+        registry.add("spring.cache.type", () -> "none");
+        registry.add("app.upload-dir", () -> workDir.resolve("comics").toString());
+        registry.add("app.upload-path", () -> workDir.resolve("avatar").toString());
+        registry.add("app.session.dir", () -> workDir.resolve("sessions").toString());
+        registry.add("app.password.bcrypt-strength", () -> "4");
+    }
+
+    @TestConfiguration
+    static class ReplicaSchema {
+
+        /**
+         * Hibernate 只在主库建表；启动时的只读查询（搜索索引等）会落到从库，所以在 ApplicationReadyEvent 之前把表结构复制过去
+         */
+        @Bean
+        SmartInitializingSingleton copySchemaToReplica() {
+            return () -> {
+                JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+                JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+                List<String> statements = primary.queryForList("SCRIPT NODATA", String.class);
+                statements.forEach(replica::execute);
+            };
+        }
+    }
+
+    @Autowired
+    private ComicService comicService;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    private Long comicId;
+    private Long userId;
+
+    @BeforeEach
+    void seed() {
+        for (JdbcTemplate db : List.of(primary, replica)) {
+            db.update("INSERT INTO users (username, password, email, role, created_at) VALUES ('owner', 'x', 'owner@example.com', 'CREATOR', NOW())");
+            userId = db.queryForObject("SELECT id FROM users WHERE username = 'owner'", Long.class);
+            db.update("INSERT INTO comics (title, description, author, cover_image_path, folder_path, chapter_count, "
+                            + "view_count, created_at, user_id) VALUES (?, '', 'a', NULL, 'f', 1, 0, NOW(), ?)",
+                    db == primary ? "主库" : "从库", userId);
+            comicId = db.queryForObject("SELECT id FROM comics WHERE folder_path = 'f'", Long.class);
+        }
+    }
+
+    @AfterEach
+    void clear() {
+        ReadWriteRoutingDataSource.forcePrimary(false);
+        for (JdbcTemplate db : List.of(primary, replica)) {
+            db.update("DELETE FROM comics");
+            db.update("DELETE FROM users");
+        }
+    }
+
+    @Test
+    void readOnlyTransactionReadsReplica() {
+        assertThat(comicService.getComicById(comicId).getTitle()).isEqualTo("从库");
+    }
+
+    @Test
+    void writeTransactionGoesToPrimary() {
+        SessionUser owner = new SessionUser(userId, "owner", UserRole.CREATOR, null);
+
+        // 写事务内部的 getComicById 加入外层事务，读到的是主库
+        comicService.updateComic(comicId, "已修改", "", "a", null, owner);
+
+        assertThat(primary.queryForObject("SELECT title FROM comics WHERE id = ?", String.class, comicId)).isEqualTo("已修改");
+        assertThat(replica.queryForObject("SELECT title FROM comics WHERE id = ?", String.class, comicId)).isEqualTo("从库");
+    }
+
+    @Test
+    void forcedPrimaryReadsPrimaryInReadOnlyTransaction() {
+        ReadWriteRoutingDataSource.forcePrimary(true);
+
+        assertThat(comicService.getComicById(comicId).getTitle()).isEqualTo("主库");
+    }
+
+    @Test
+    void writeRequestPinsFollowingReadsToPrimary() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        AtomicReference<String> title = new AtomicReference<>();
+
+        MockHttpServletResponse upload = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/comics/upload"), upload,
+                (request, response) -> title.set(comicService.getComicById(comicId).getTitle()));
+        assertThat(title.get()).isEqualTo("主库");
+        Cookie cookie = upload.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+
+        // 上传后的重定向带着 Cookie，详情页读主库
+        MockHttpServletRequest redirect = new MockHttpServletRequest("GET", "/comics/" + comicId);
+        redirect.setCookies(cookie);
+        filter.doFilter(redirect, new MockHttpServletResponse(),
+                (request, response) -> title.set(comicService.getComicById(comicId).getTitle()));
+        assertThat(title.get()).isEqualTo("主库");
+
+        // 其他客户端照常读从库，过滤器结束后不残留路由标记
+        filter.doFilter(new MockHttpServletRequest("GET", "/comics/" + comicId), new MockHttpServletResponse(),
+                (request, response) -> title.set(comicService.getComicById(comicId).getTitle()));
+        assertThat(title.get()).isEqualTo("从库");
+        assertThat(comicService.getComicById(comicId).getTitle()).isEqualTo("从库");
+    }
+}
@@ -0,0 +1,268 @@
+package wtf.alexhan.thousandlines.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import wtf.alexhan.thousandlines.service.ComicPack;
+import wtf.alexhan.thousandlines.service.ComicPackStore;
+import wtf.alexhan.thousandlines.service.ImageDerivativeService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 协商缓存和 Range 请求的头部解析；单独的文件和打包文件中的切片走同一套逻辑
+ */
+class UploadResourceControllerTest {
+
+    private static final String FILE_URI = "/uploads/avatars/a.png";
+    private static final String PACKED_URI = "/uploads/comics/packed/1.jpg";
+    private static final Instant MODIFIED = Instant.parse("2024-05-01T10:00:00Z");
+
+    @TempDir
+    Path root;
+
+    private UploadResourceController controller;
+    private byte[] content;
+    private String etag;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[100];
+        new Random(1).nextBytes(content);
+        Path file = Files.createDirectories(root.resolve("avatars")).resolve("a.png");
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+        etag = "\"" + Long.toHexString(content.length) + "-" + Long.toHexString(MODIFIED.toEpochMilli()) + "\"";
+
+        Path source = Files.write(root.resolve("page.jpg"), content);
+        Files.createDirectories(root.resolve("comics"));
+        ComicPack.write(Map.of("1.jpg", source), root.resolve("comics").resolve("packed.pack"));
+
+        controller = new UploadResourceController(root.toString(),
+                new ImageDerivativeService(new int[]{240, 720}, 0.82f, 40_000_000), new ComicPackStore(root.toString(), 16));
+    }
+
+    @Test
+    void servesWholeFileWithCacheHeaders() throws IOException {
+        MockHttpServletResponse response = serve(get(FILE_URI));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(response.getDateHeader(HttpHeaders.LAST_MODIFIED)).isEqualTo(MODIFIED.toEpochMilli());
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("public, max-age=3600");
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    }
+
+    @Test
+    void matchingIfNoneMatchReturnsNotModified() throws IOException {
+        for (String header : new String[]{etag, "\"other\", " + etag, "W/" + etag, "*"}) {
+            MockHttpServletRequest request = get(FILE_URI);
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, header);
+
+            MockHttpServletResponse response = serve(request);
+
+            assertThat(response.getStatus()).as(header).isEqualTo(304);
+            assertThat(response.getContentAsByteArray()).as(header).isEmpty();
+        }
+    }
+
+    @Test
+    void ifNoneMatchTakesPrecedenceOverIfModifiedSince() throws IOException {
+        MockHttpServletRequest request = get(FILE_URI);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.plusSeconds(60).toEpochMilli());
+
+        assertThat(serve(request).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ifModifiedSinceComparesWholeSeconds() throws IOException {
+        MockHttpServletRequest request = get(FILE_URI);
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.toEpochMilli());
+        assertThat(serve(request).getStatus()).isEqualTo(304);
+
+        request = get(FILE_URI);
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.minusSeconds(1).toEpochMilli());
+        assertThat(serve(request).getStatus()).isEqualTo(200);
+
+        // 无法解析的日期按没有条件处理
+        request = get(FILE_URI);
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "yesterday");
+        assertThat(serve(request).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void boundedRangeReturnsPartialContent() throws IOException {
+        MockHttpServletResponse response = serve(range(FILE_URI, "bytes=10-19"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/100");
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 10, 20));
+    }
+
+    @Test
+    void openAndOverlongRangesStopAtEndOfFile() throws IOException {
+        for (String header : new String[]{"bytes=90-", "bytes=90-500"}) {
+            MockHttpServletResponse response = serve(range(FILE_URI, header));
+
+            assertThat(response.getStatus()).as(header).isEqualTo(206);
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).as(header).isEqualTo("bytes 90-99/100");
+            assertThat(response.getContentAsByteArray()).as(header).isEqualTo(Arrays.copyOfRange(content, 90, 100));
+        }
+    }
+
+    @Test
+    void suffixRangeReturnsLastBytes() throws IOException {
+        MockHttpServletResponse response = serve(range(FILE_URI, "bytes=-30"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 70-99/100");
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 70, 100));
+    }
+
+    @Test
+    void suffixLongerThanFileCoversWholeFile() throws IOException {
+        MockHttpServletResponse response = serve(range(FILE_URI, "bytes=-500"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 0-99/100");
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void unsatisfiableRangesReturn416() throws IOException {
+        for (String header : new String[]{"bytes=100-", "bytes=150-200", "bytes=20-10", "bytes=-0"}) {
+            MockHttpServletResponse response = serve(range(FILE_URI, header));
+
+            assertThat(response.getStatus()).as(header).isEqualTo(416);
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).as(header).isEqualTo("bytes */100");
+        }
+    }
+
+    @Test
+    void unsupportedRangesReturnWholeFile() throws IOException {
+        for (String header : new String[]{"bytes=0-9,20-29", "bytes=-", "items=0-9", "bytes=a-b"}) {
+            MockHttpServletResponse response = serve(range(FILE_URI, header));
+
+            assertThat(response.getStatus()).as(header).isEqualTo(200);
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).as(header).isNull();
+            assertThat(response.getContentAsByteArray()).as(header).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void ifRangeWithCurrentValidatorAppliesRange() throws IOException {
+        MockHttpServletRequest byEtag = range(FILE_URI, "bytes=0-9");
+        byEtag.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertThat(serve(byEtag).getStatus()).isEqualTo(206);
+
+        MockHttpServletRequest byDate = range(FILE_URI, "bytes=0-9");
+        byDate.addHeader(HttpHeaders.IF_RANGE, MODIFIED.toEpochMilli());
+        assertThat(serve(byDate).getStatus()).isEqualTo(206);
+    }
+
+    @Test
+    void ifRangeWithStaleOrWeakValidatorReturnsWholeFile() throws IOException {
+        // If-Range 只接受强 ETag
+        for (String header : new String[]{"\"other\"", "W/" + etag, "not a date"}) {
+            MockHttpServletRequest request = range(FILE_URI, "bytes=0-9");
+            request.addHeader(HttpHeaders.IF_RANGE, header);
+
+            MockHttpServletResponse response = serve(request);
+
+            assertThat(response.getStatus()).as(header).isEqualTo(200);
+            assertThat(response.getContentAsByteArray()).as(header).isEqualTo(content);
+        }
+
+        MockHttpServletRequest byDate = range(FILE_URI, "bytes=0-9");
+        byDate.addHeader(HttpHeaders.IF_RANGE, MODIFIED.minusSeconds(1).toEpochMilli());
+        assertThat(serve(byDate).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void headReturnsLengthWithoutBody() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", FILE_URI);
+        request.addHeader(HttpHeaders.RANGE, "bytes=-30");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentLengthLong()).isEqualTo(30);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void packedPageSupportsRangesAndImmutableCaching() throws IOException {
+        MockHttpServletResponse whole = serve(get(PACKED_URI));
+        assertThat(whole.getStatus()).isEqualTo(200);
+        assertThat(whole.getContentAsByteArray()).isEqualTo(content);
+        assertThat(whole.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("public, max-age=31536000, immutable");
+
+        MockHttpServletResponse suffix = serve(range(PACKED_URI, "bytes=-25"));
+        assertThat(suffix.getStatus()).isEqualTo(206);
+        assertThat(suffix.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 75, 100));
+
+        MockHttpServletRequest conditional = get(PACKED_URI);
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, whole.getHeader(HttpHeaders.ETAG));
+        assertThat(serve(conditional).getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    void rejectsPathTraversalAndMissingFiles() throws IOException {
+        for (String uri : new String[]{"/uploads/../pom.xml", "/uploads/avatars/%2e%2e/page.jpg",
+                "/uploads/avatars/missing.png", "/uploads/"}) {
+            assertThat(serve(get(uri)).getStatus()).as(uri).isEqualTo(404);
+        }
+    }
+
+    @Test
+    void internalFilesAreNotServed() throws IOException {
+        Path folder = Files.createDirectories(root.resolve("comics").resolve("loose"));
+        Files.write(folder.resolve("1.jpg"), content);
+        Files.write(folder.resolve(".blobs"), "1.jpg abc.jpg\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve(".variant-1@720.jpg.tmp"), content);
+        Files.write(Files.createDirectories(root.resolve("comics").resolve(".staging-loose")).resolve("1.jpg"), content);
+        Files.write(Files.createDirectories(root.resolve("blobs").resolve("tmp")).resolve("blob-1.tmp"), content);
+
+        assertThat(serve(get("/uploads/comics/loose/1.jpg")).getStatus()).isEqualTo(200);
+        for (String uri : new String[]{"/uploads/comics/loose/.blobs", "/uploads/comics/loose/.variant-1@720.jpg.tmp",
+                "/uploads/comics/.staging-loose/1.jpg", "/uploads/comics/%2Estaging-loose/1.jpg",
+                "/uploads/blobs/tmp/blob-1.tmp", "/uploads/blobs//tmp/blob-1.tmp", "/uploads//blobs/tmp/blob-1.tmp"}) {
+            MockHttpServletResponse response = serve(get(uri));
+
+            assertThat(response.getStatus()).as(uri).isEqualTo(404);
+            assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).as(uri).isNull();
+        }
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.serve(request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private static MockHttpServletRequest range(String uri, String range) {
+        MockHttpServletRequest request = get(uri);
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+}
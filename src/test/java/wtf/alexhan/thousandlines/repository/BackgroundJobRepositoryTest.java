@@ -0,0 +1,91 @@
+package wtf.alexhan.thousandlines.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import wtf.alexhan.thousandlines.model.BackgroundJob;
+import wtf.alexhan.thousandlines.model.JobStatus;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 任务租约相关的条件更新；每次调用单独提交，和线上的调用方式一致
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BackgroundJobRepositoryTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private BackgroundJobRepository jobs;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @AfterEach
+    void clear() {
+        jobs.deleteAll();
+    }
+
+    @Test
+    void releaseFromExpiredRunDoesNotTouchNewerRun() {
+        Long id = pendingJob(7L);
+        jobs.claim(id, "worker", now.minusMinutes(1), now.minusMinutes(11), JobStatus.PENDING, JobStatus.RUNNING);
+        // 第一次执行的租约过期后被同一实例再次认领
+        assertThat(jobs.requeueExpired(now, MAX_ATTEMPTS, JobStatus.PENDING, JobStatus.RUNNING)).isEqualTo(1);
+        jobs.claim(id, "worker", now.plusMinutes(10), now, JobStatus.PENDING, JobStatus.RUNNING);
+
+        assertThat(jobs.release(id, "worker", 1, JobStatus.RUNNING, JobStatus.DONE, now, null, now)).isZero();
+        assertThat(jobs.findById(id)).get().extracting(BackgroundJob::getStatus).isEqualTo(JobStatus.RUNNING);
+
+        assertThat(jobs.release(id, "worker", 2, JobStatus.RUNNING, JobStatus.DONE, now, null, now)).isEqualTo(1);
+        assertThat(jobs.findById(id)).get().extracting(BackgroundJob::getStatus).isEqualTo(JobStatus.DONE);
+    }
+
+    @Test
+    void heartbeatKeepsLeaseFromExpiring() {
+        Long id = pendingJob(7L);
+        jobs.claim(id, "worker", now.plusSeconds(1), now.minusMinutes(1), JobStatus.PENDING, JobStatus.RUNNING);
+
+        assertThat(jobs.extendLease(id, "worker", 1, JobStatus.RUNNING, now.plusMinutes(10), now)).isEqualTo(1);
+        assertThat(jobs.requeueExpired(now.plusMinutes(5), MAX_ATTEMPTS, JobStatus.PENDING, JobStatus.RUNNING)).isZero();
+        // 其他实例或旧的那次执行不能续约
+        assertThat(jobs.extendLease(id, "other", 1, JobStatus.RUNNING, now.plusMinutes(10), now)).isZero();
+        assertThat(jobs.extendLease(id, "worker", 2, JobStatus.RUNNING, now.plusMinutes(10), now)).isZero();
+    }
+
+    @Test
+    void expiredJobWithoutAttemptsLeftIsFailedInsteadOfRequeued() {
+        Long exhausted = pendingJob(7L);
+        Long retryable = pendingJob(8L);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            jobs.claim(exhausted, "worker", now.minusMinutes(1), now, JobStatus.PENDING, JobStatus.RUNNING);
+            if (i < MAX_ATTEMPTS - 1) {
+                jobs.requeueExpired(now, MAX_ATTEMPTS, JobStatus.PENDING, JobStatus.RUNNING);
+            }
+        }
+        jobs.claim(retryable, "worker", now.minusMinutes(1), now, JobStatus.PENDING, JobStatus.RUNNING);
+
+        assertThat(jobs.findExhaustedComicIds(now, MAX_ATTEMPTS, JobStatus.RUNNING)).containsExactly(7L);
+        assertThat(jobs.failExhausted(now, MAX_ATTEMPTS, "租约过期", JobStatus.RUNNING, JobStatus.FAILED)).isEqualTo(1);
+        assertThat(jobs.requeueExpired(now, MAX_ATTEMPTS, JobStatus.PENDING, JobStatus.RUNNING)).isEqualTo(1);
+
+        assertThat(jobs.findById(exhausted)).get().extracting(BackgroundJob::getStatus).isEqualTo(JobStatus.FAILED);
+        assertThat(jobs.findById(retryable)).get().extracting(BackgroundJob::getStatus).isEqualTo(JobStatus.PENDING);
+    }
+
+    private Long pendingJob(Long comicId) {
+        BackgroundJob job = new BackgroundJob();
+        job.setType("test");
+        job.setComicId(comicId);
+        return jobs.save(job).getId();
+    }
+}
@@ -0,0 +1,46 @@
+package wtf.alexhan.thousandlines.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.ComicPage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 页面清单补算只挑出有页面目录、还没有页面元数据的漫画
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+class ComicRepositoryTest {
+
+    @Autowired
+    private ComicRepository comics;
+
+    @Autowired
+    private ComicPageRepository pages;
+
+    @Test
+    void findsComicsWithoutPageMetadata() {
+        Long withPages = comic("with-pages");
+        Long withoutPages = comic("without-pages");
+        comic(null);
+        ComicPage page = new ComicPage();
+        page.setComicId(withPages);
+        page.setPageNumber(1);
+        page.setSha256("0".repeat(64));
+        pages.save(page);
+
+        assertThat(comics.findIdsWithoutPageMetadata()).containsExactly(withoutPages);
+    }
+
+    private Long comic(String folder) {
+        Comic comic = new Comic();
+        comic.setTitle("漫画");
+        comic.setFolderPath(folder);
+        return comics.save(comic).getId();
+    }
+}
@@ -0,0 +1,184 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wtf.alexhan.thousandlines.dto.ChunkedUploadStatus;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.dto.UploadComicRequest;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.UserRole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkedUploadServiceTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+    private static final SessionUser OWNER = new SessionUser(1L, "owner", UserRole.CREATOR, null);
+
+    @TempDir
+    Path dir;
+
+    private final ComicService comicService = mock(ComicService.class);
+    private ChunkedUploadService uploads;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploads = new ChunkedUploadService(comicService, dir.toString(), TTL, 1024, 10);
+    }
+
+    @Test
+    void appendRefreshesExpiryThroughDirectoryTime() throws IOException {
+        String id = create();
+        Files.setLastModifiedTime(dir.resolve(id), FileTime.from(Instant.now().minus(Duration.ofMinutes(50))));
+
+        uploads.append(id, OWNER, 0, 0, body(3));
+
+        ChunkedUploadStatus status = uploads.getStatus(id, OWNER);
+        assertThat(status.expiresAt()).isAfter(Instant.now().plus(TTL).minusSeconds(10));
+        assertThat(status.files().get(0).offset()).isEqualTo(3);
+    }
+
+    @Test
+    void purgeUsesDirectoryTimeOnly() throws IOException {
+        String id = create();
+        uploads.append(id, OWNER, 0, 0, body(3));
+        Files.setLastModifiedTime(dir.resolve(id), FileTime.from(Instant.now().minus(TTL).minusSeconds(1)));
+
+        uploads.purgeExpired();
+
+        assertThat(dir.resolve(id)).doesNotExist();
+        assertThatThrownBy(() -> uploads.getStatus(id, OWNER)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void abortAndCompleteAreRejectedWhileAppending() throws Exception {
+        String id = create();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slowBody = new InputStream() {
+            private boolean sent;
+
+            @Override
+            public int read() throws IOException {
+                if (!sent) {
+                    sent = true;
+                    reading.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return 1;
+                }
+                return -1;
+            }
+        };
+        CompletableFuture<Long> append = CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploads.append(id, OWNER, 0, 0, slowBody);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 分块写入期间不能放弃或完成，暂存目录不会在写入途中被删除
+        assertThatThrownBy(() -> uploads.abort(id, OWNER)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> uploads.complete(id, OWNER)).isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        assertThat(append.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        uploads.abort(id, OWNER);
+        assertThat(dir.resolve(id)).doesNotExist();
+    }
+
+    @Test
+    void filesOfOneUploadCanBeAppendedInParallel() throws Exception {
+        String id = create();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slowBody = new InputStream() {
+            private boolean sent;
+
+            @Override
+            public int read() throws IOException {
+                if (sent) {
+                    return -1;
+                }
+                sent = true;
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return 1;
+            }
+        };
+        CompletableFuture<Long> cover = CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploads.append(id, OWNER, 0, 0, slowBody);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(uploads.append(id, OWNER, 1, 0, body(4))).isEqualTo(4);
+        // 同一个文件的分块仍然互斥
+        assertThatThrownBy(() -> uploads.append(id, OWNER, 0, 0, body(1)))
+                .isInstanceOf(UploadOffsetConflictException.class);
+
+        release.countDown();
+        assertThat(cover.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    void completeHandsFilesToComicServiceAndDeletesStaging() throws IOException {
+        String id = create();
+        uploads.append(id, OWNER, 0, 0, body(3));
+        uploads.append(id, OWNER, 1, 0, body(4));
+        Comic comic = new Comic();
+        comic.setId(42L);
+        when(comicService.uploadComic(any(UploadComicRequest.class), any(SessionUser.class))).thenReturn(comic);
+
+        assertThat(uploads.complete(id, OWNER).getId()).isEqualTo(42L);
+        assertThat(dir.resolve(id)).doesNotExist();
+    }
+
+    @Test
+    void unknownUploadIdIsNotFound() {
+        assertThatThrownBy(() -> uploads.append("0123456789abcdef0123456789abcdef", OWNER, 0, 0, body(1)))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> uploads.abort("../etc", OWNER)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    private String create() throws IOException {
+        UploadComicRequest metadata = new UploadComicRequest();
+        metadata.setTitle("标题");
+        return uploads.create(OWNER, metadata, "cover.jpg", 3, List.of("1.jpg"), List.of(4L)).id();
+    }
+
+    private static InputStream body(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+}
@@ -0,0 +1,73 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 归档内页面文件名的自然排序
+ */
+class ComicArchiveServiceTest {
+
+    @Test
+    void numbersCompareByValue() {
+        assertSorted("1.jpg", "2.jpg", "10.jpg", "11.jpg", "100.jpg");
+    }
+
+    @Test
+    void leadingZerosDoNotChangeNumericOrder() {
+        assertSorted("page1.jpg", "page002.jpg", "page09.jpg", "page10.jpg", "page0100.jpg");
+    }
+
+    @Test
+    void equalValuesWithDifferentZeroPaddingHaveStableOrder() {
+        assertSorted("001.jpg", "01.jpg", "1.jpg", "2.jpg");
+        assertThat(ComicArchiveService.NATURAL_ORDER.compare("01.jpg", "1.jpg")).isNegative();
+        assertThat(ComicArchiveService.NATURAL_ORDER.compare("1.jpg", "01.jpg")).isPositive();
+    }
+
+    @Test
+    void zeroItselfIsKept() {
+        assertSorted("0.jpg", "00.jpg", "1.jpg");
+    }
+
+    @Test
+    void numbersLongerThanLongDoNotOverflow() {
+        assertSorted("9.jpg", "18446744073709551616.jpg", "99999999999999999999999.jpg");
+    }
+
+    @Test
+    void textIsComparedIgnoringCase() {
+        assertSorted("Chapter 1/2.jpg", "chapter 1/10.jpg", "CHAPTER 2/1.jpg", "chapter 10/1.jpg");
+    }
+
+    @Test
+    void shorterNameSortsFirstWhenOneIsPrefixOfOther() {
+        assertSorted("1", "1.jpg", "1a.jpg", "1b.jpg");
+    }
+
+    @Test
+    void comparatorIsAntisymmetricAndOnlyZeroForEqualNames() {
+        List<String> names = List.of("1.jpg", "01.jpg", "A1.jpg", "a1.jpg", "a01.jpg", "a10.jpg", "b.jpg", "10");
+        for (String a : names) {
+            for (String b : names) {
+                int ab = Integer.signum(ComicArchiveService.NATURAL_ORDER.compare(a, b));
+                int ba = Integer.signum(ComicArchiveService.NATURAL_ORDER.compare(b, a));
+                assertThat(ab).as(a + " / " + b).isEqualTo(-ba);
+                assertThat(ab == 0).as(a + " / " + b).isEqualTo(a.equals(b));
+            }
+        }
+    }
+
+    private static void assertSorted(String... expected) {
+        List<String> names = new ArrayList<>(List.of(expected));
+        Collections.shuffle(names, new Random(7));
+        names.sort(ComicArchiveService.NATURAL_ORDER);
+        assertThat(names).containsExactly(expected);
+    }
+}
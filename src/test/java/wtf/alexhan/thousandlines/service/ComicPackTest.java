@@ -0,0 +1,192 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ComicPackTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeThenOpenReturnsEveryFileInOrder() throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        files.put(".blobs", file(".blobs", "1.jpg abc.jpg\n".getBytes(StandardCharsets.UTF_8)));
+        files.put("1.jpg", file("1.jpg", bytes(5000, 1)));
+        files.put("2.jpg", file("2.jpg", bytes(0, 2)));
+        files.put("1@720.jpg", file("1@720.jpg", bytes(1234, 3)));
+        Path target = dir.resolve("comic.pack");
+
+        ComicPack.write(files, target);
+        ComicPack pack = ComicPack.open(target);
+
+        assertThat(pack.names()).containsExactly(".blobs", "1.jpg", "2.jpg", "1@720.jpg");
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            byte[] expected = Files.readAllBytes(file.getValue());
+            assertThat(pack.entry(file.getKey()).length()).isEqualTo(expected.length);
+            assertThat(toArray(pack.slice(file.getKey()))).isEqualTo(expected);
+            try (InputStream in = pack.openStream(file.getKey())) {
+                assertThat(in.readAllBytes()).isEqualTo(expected);
+            }
+        }
+        assertThat(pack.slice("3.jpg")).isNull();
+        assertThat(pack.openStream("3.jpg")).isNull();
+        assertThat(pack.getLastModified()).isEqualTo(Files.getLastModifiedTime(target).toMillis());
+    }
+
+    @Test
+    void writeReplacesExistingPackAndLeavesNoTempFiles() throws IOException {
+        Path target = dir.resolve("comic.pack");
+        ComicPack.write(Map.of("1.jpg", file("a.jpg", bytes(10, 1))), target);
+        ComicPack.write(Map.of("1.jpg", file("b.jpg", bytes(20, 2))), target);
+
+        assertThat(toArray(ComicPack.open(target).slice("1.jpg"))).isEqualTo(bytes(20, 2));
+        try (var listing = Files.list(dir)) {
+            assertThat(listing.map(path -> path.getFileName().toString())).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void slicesAreIndependentOfEachOther() throws IOException {
+        Path target = dir.resolve("comic.pack");
+        ComicPack.write(Map.of("1.jpg", file("1.jpg", bytes(100, 1))), target);
+        ComicPack pack = ComicPack.open(target);
+
+        ByteBuffer first = pack.slice("1.jpg");
+        first.get(new byte[60]);
+        assertThat(pack.slice("1.jpg").remaining()).isEqualTo(100);
+    }
+
+    @Test
+    void rejectsFileWithWrongMagic() throws IOException {
+        Path target = dir.resolve("bad.pack");
+        Files.write(target, "PK\u0003\u0004 not a comic pack".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThatThrownBy(() -> ComicPack.open(target)).isInstanceOf(IOException.class).hasMessageContaining("不是漫画打包文件");
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        Path target = dir.resolve("bad.pack");
+        writeHeader(target, 2, 0);
+
+        assertThatThrownBy(() -> ComicPack.open(target)).isInstanceOf(IOException.class).hasMessageContaining("版本 2");
+    }
+
+    @Test
+    void rejectsNegativeEntryCount() throws IOException {
+        Path target = dir.resolve("bad.pack");
+        writeHeader(target, 1, -1);
+
+        assertThatThrownBy(() -> ComicPack.open(target)).isInstanceOf(IOException.class).hasMessageContaining("索引损坏");
+    }
+
+    @Test
+    void rejectsTruncatedIndex() throws IOException {
+        Path target = dir.resolve("comic.pack");
+        ComicPack.write(Map.of("1.jpg", file("1.jpg", bytes(100, 1))), target);
+        byte[] content = Files.readAllBytes(target);
+        // 只保留文件头和半个索引条目
+        Files.write(target, Arrays.copyOf(content, 12 + 5));
+
+        assertThatThrownBy(() -> ComicPack.open(target)).isInstanceOf(IOException.class).hasMessageContaining("索引损坏");
+    }
+
+    @Test
+    void rejectsEntryPastEndOfFile() throws IOException {
+        Path target = dir.resolve("comic.pack");
+        ComicPack.write(Map.of("1.jpg", file("1.jpg", bytes(100, 1))), target);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThatThrownBy(() -> ComicPack.open(target)).isInstanceOf(IOException.class).hasMessageContaining("索引损坏");
+    }
+
+    /**
+     * 超过 2GB 的打包文件不整体映射，按条目单独映射；用稀疏文件构造，不实际占用磁盘
+     */
+    @Test
+    void readsEntriesOfPackLargerThanTwoGigabytes() throws IOException {
+        Path target = dir.resolve("large.pack");
+        byte[] name = "1.jpg".getBytes(StandardCharsets.UTF_8);
+        byte[] first = bytes(1000, 1);
+        byte[] last = bytes(1000, 2);
+        long firstOffset = 12 + 2L * (2 + name.length + 16);
+        long lastOffset = Integer.MAX_VALUE + 4096L;
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(target))) {
+            out.writeInt(0x544C504B);
+            out.writeInt(1);
+            out.writeInt(2);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeLong(firstOffset);
+            out.writeLong(first.length);
+            byte[] lastName = "2.jpg".getBytes(StandardCharsets.UTF_8);
+            out.writeShort(lastName.length);
+            out.write(lastName);
+            out.writeLong(lastOffset);
+            out.writeLong(last.length);
+            out.write(first);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            file.setLength(lastOffset + last.length);
+            file.seek(lastOffset);
+            file.write(last);
+        }
+
+        ComicPack pack = ComicPack.open(target);
+
+        assertThat(pack.names()).containsExactly("1.jpg", "2.jpg");
+        assertThat(toArray(pack.slice("1.jpg"))).isEqualTo(first);
+        assertThat(toArray(pack.slice("2.jpg"))).isEqualTo(last);
+        try (InputStream in = pack.openStream("2.jpg")) {
+            assertThat(in.readAllBytes()).isEqualTo(last);
+        }
+    }
+
+    private Path file(String name, byte[] content) throws IOException {
+        Path file = dir.resolve("source-" + name);
+        Files.write(file, content);
+        return file;
+    }
+
+    private static void writeHeader(Path target, int version, int count) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(target))) {
+            out.writeInt(0x544C504B);
+            out.writeInt(version);
+            out.writeInt(count);
+        }
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.duplicate().get(content);
+        return content;
+    }
+}
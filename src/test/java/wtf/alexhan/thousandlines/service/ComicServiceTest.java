@@ -0,0 +1,149 @@
+package wtf.alexhan.thousandlines.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wtf.alexhan.thousandlines.dto.ComicCard;
+import wtf.alexhan.thousandlines.dto.ComicFeed;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.job.JobQueueService;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.model.User;
+import wtf.alexhan.thousandlines.model.UserRole;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+import wtf.alexhan.thousandlines.repository.TagRepository;
+import wtf.alexhan.thousandlines.repository.UserRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 热门 / 最新列表的游标分页：游标编码后能原样还原排序键，格式不对的游标按参数错误处理；
+ * 删除漫画时文件在事务提交后才删除
+ */
+class ComicServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123_456_000);
+
+    private final ComicRepository comicRepository = mock(ComicRepository.class);
+    private final ViewCountService viewCountService = mock(ViewCountService.class);
+    private final StorageService storageService = mock(StorageService.class);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    private final ComicService service = new ComicService(comicRepository, mock(TagRepository.class),
+            mock(UserRepository.class), storageService, viewCountService, mock(SearchService.class),
+            mock(RelatedComicsService.class), mock(TagUsageService.class), mock(TagDictionaryService.class),
+            mock(JobQueueService.class), mock(ComicManifestService.class), transactionTemplate,
+            mock(ApplicationEventPublisher.class), new SimpleMeterRegistry());
+
+    @Test
+    void popularCursorResumesAfterStoredViewCountAndId() {
+        ComicCard last = card(41L, 1200L, CREATED_AT);
+        // 未写回的浏览增量不参与排序，游标只用数据库中的值
+        last.setPendingViewCount(30);
+
+        service.getPopularFeed(service.cursorAfter(ComicService.SORT_POPULAR, last), 12);
+
+        verify(comicRepository).findPopularCardsAfter(1200L, 41L, PageRequest.of(0, 12));
+    }
+
+    @Test
+    void latestCursorKeepsFullTimestampPrecision() {
+        ComicCard last = card(41L, 1200L, CREATED_AT);
+
+        service.getLatestFeed(service.cursorAfter(ComicService.SORT_LATEST, last), 12);
+
+        verify(comicRepository).findLatestCardsAfter(CREATED_AT, 41L, PageRequest.of(0, 12));
+    }
+
+    @Test
+    void cursorIsUrlSafeWithoutPadding() {
+        String cursor = service.cursorAfter(ComicService.SORT_LATEST, card(41L, 0L, CREATED_AT));
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void fullPageCarriesCursorOfLastCard() {
+        when(comicRepository.findPopularCards(any())).thenReturn(List.of(card(9L, 50L, CREATED_AT), card(8L, 40L, CREATED_AT)));
+
+        ComicFeed feed = service.getPopularFeed(null, 2);
+
+        assertThat(feed.getNextCursor()).isEqualTo(service.cursorAfter(ComicService.SORT_POPULAR, card(8L, 40L, CREATED_AT)));
+    }
+
+    @Test
+    void shortPageHasNoNextCursor() {
+        when(comicRepository.findLatestCards(any())).thenReturn(List.of(card(9L, 50L, CREATED_AT)));
+
+        assertThat(service.getLatestFeed("", 2).getNextCursor()).isNull();
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        for (String cursor : new String[]{"not base64!", encode("1200"), encode("|41"), encode("1200|"),
+                encode("many|41"), encode("1200|x")}) {
+            assertThatThrownBy(() -> service.getPopularFeed(cursor, 12)).as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("无效的分页游标");
+        }
+        for (String cursor : new String[]{encode("yesterday|41"), encode("1200|41")}) {
+            assertThatThrownBy(() -> service.getLatestFeed(cursor, 12)).as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("无效的分页游标");
+        }
+        verifyNoMoreInteractions(comicRepository);
+    }
+
+    @Test
+    void deletedComicFilesAreRemovedOnlyAfterCommit() throws IOException {
+        User owner = new User();
+        owner.setId(3L);
+        Comic comic = new Comic();
+        comic.setId(41L);
+        comic.setUser(owner);
+        comic.setFolderPath("folder");
+        comic.setCoverImagePath("blobs/ab/cd/abcd.jpg");
+        when(comicRepository.findById(41L)).thenReturn(Optional.of(comic));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.deleteComic(41L, new SessionUser(3L, "owner", UserRole.USER, null));
+
+            verify(storageService, never()).deleteFolder(any());
+            verify(storageService, never()).releaseFile(any());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(storageService).deleteFolder("folder");
+        verify(storageService).releaseFile("blobs/ab/cd/abcd.jpg");
+    }
+
+    private static ComicCard card(Long id, Long viewCount, LocalDateTime createdAt) {
+        return new ComicCard(id, "漫画 " + id, "作者", null, null, 1, viewCount, createdAt);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,112 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final ImageDerivativeService service = new ImageDerivativeService(new int[]{240, 720}, 0.82f, 40_000_000);
+
+    @Test
+    void narrowOriginalIsReturnedWithoutWritingVariant() throws IOException {
+        Path original = image("1.jpg", 200, 300);
+
+        assertThat(service.resolveVariant(original, 240)).isEqualTo(original);
+        assertThat(dir.resolve("1@240.jpg")).doesNotExist();
+    }
+
+    @Test
+    void wideOriginalIsScaledToRequestedWidth() throws IOException {
+        Path original = image("1.jpg", 1000, 1500);
+
+        Path variant = service.resolveVariant(original, 240);
+
+        assertThat(variant).isEqualTo(dir.resolve("1@240.jpg"));
+        BufferedImage scaled = ImageIO.read(variant.toFile());
+        assertThat(scaled.getWidth()).isEqualTo(240);
+        assertThat(scaled.getHeight()).isEqualTo(360);
+    }
+
+    @Test
+    void streamOriginalNarrowerThanWidthReturnsNull() throws IOException {
+        Path original = image("1.jpg", 200, 300);
+
+        try (InputStream in = Files.newInputStream(original)) {
+            assertThat(service.resolveVariant(in, dir.resolve("packed/1@720.jpg"), 720)).isNull();
+        }
+        assertThat(dir.resolve("packed")).doesNotExist();
+    }
+
+    @Test
+    void unreadableOriginalIsReturnedAsIs() throws IOException {
+        Path original = Files.write(dir.resolve("1.jpg"), new byte[]{1, 2, 3});
+
+        assertThat(service.resolveVariant(original, 240)).isEqualTo(original);
+    }
+
+    @Test
+    void originalOverPixelCapIsNotDecoded() throws IOException {
+        ImageDerivativeService capped = new ImageDerivativeService(new int[]{240, 720}, 0.82f, 1_000_000);
+        Path original = image("1.jpg", 1000, 1500);
+
+        assertThat(capped.resolveVariant(original, 240)).isEqualTo(original);
+        capped.generateAll(original);
+        try (InputStream in = Files.newInputStream(original)) {
+            assertThat(capped.resolveVariant(in, dir.resolve("packed/1@240.jpg"), 240)).isNull();
+        }
+        try (var listing = Files.list(dir)) {
+            assertThat(listing.map(path -> path.getFileName().toString())).containsExactly("1.jpg");
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneGeneration() throws Exception {
+        Path original = image("1.jpg", 2000, 3000);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.resolveVariant(original, 720);
+                }));
+            }
+            start.countDown();
+            for (Future<Path> result : results) {
+                assertThat(result.get()).isEqualTo(dir.resolve("1@720.jpg"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 只有一次生成，不残留其他请求的临时文件
+        try (var listing = Files.list(dir)) {
+            assertThat(listing.map(path -> path.getFileName().toString())).containsExactlyInAnyOrder("1.jpg", "1@720.jpg");
+        }
+    }
+
+    private Path image(String name, int width, int height) throws IOException {
+        Path file = dir.resolve(name);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", file.toFile());
+        return file;
+    }
+}
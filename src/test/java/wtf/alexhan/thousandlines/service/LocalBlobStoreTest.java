@@ -0,0 +1,163 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wtf.alexhan.thousandlines.model.StoredBlob;
+import wtf.alexhan.thousandlines.repository.StoredBlobRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class LocalBlobStoreTest {
+
+    private static Path workDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        workDir = Files.createTempDirectory("blob-store-test");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:blobs;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+        registry.add("spring.datasource.username", () -> "sa");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.H2Dialect");
+        registry.add("app.upload-dir", () -> workDir.resolve("uploads").toString());
+        registry.add("app.upload-path", () -> workDir.resolve("avatar").toString());
+        registry.add("app.session.dir", () -> workDir.resolve("sessions").toString());
+    }
+
+    @Autowired
+    private LocalBlobStore blobStore;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void releaseWithoutTransactionDeletesImmediately() throws IOException {
+        String key = put("plain");
+
+        blobStore.release(key);
+
+        assertThat(blobStore.resolve(key)).doesNotExist();
+        assertThat(storedBlobRepository.existsById(key)).isFalse();
+    }
+
+    @Test
+    void rolledBackReleaseKeepsFileAndReference() throws IOException {
+        String key = put("rollback");
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            release(key);
+            // 事务内文件仍在，提交前不能删除
+            assertThat(blobStore.resolve(key)).exists();
+            throw new IllegalStateException("回滚");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(blobStore.resolve(key)).exists();
+        assertThat(storedBlobRepository.findById(key)).get().extracting(StoredBlob::getRefCount).isEqualTo(1L);
+    }
+
+    @Test
+    void committedReleaseDeletesFileAfterCommit() throws IOException {
+        String key = put("commit");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            release(key);
+            assertThat(blobStore.resolve(key)).exists();
+        });
+
+        assertThat(blobStore.resolve(key)).doesNotExist();
+    }
+
+    @Test
+    void reuploadBetweenCommitAndDeletionKeepsFile() throws IOException {
+        String key = put("reupload");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 先于 release 注册，提交后先执行：另一个请求在这个间隙上传了相同内容
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return put("reupload");
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }).join();
+                }
+            });
+            release(key);
+        });
+
+        assertThat(blobStore.resolve(key)).exists();
+        assertThat(storedBlobRepository.findById(key)).get().extracting(StoredBlob::getRefCount).isEqualTo(1L);
+    }
+
+    @Test
+    void uploadDuringDeletionWaitsAndPutsFileBack() throws Exception {
+        String key = put("deleting");
+        storedBlobRepository.release(key);
+
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // 模拟删除线程：锁住引用行并删掉文件，期间相同内容再次上传
+            assertThat(storedBlobRepository.findForUpdate(key)).get().extracting(StoredBlob::getRefCount).isEqualTo(0L);
+            try {
+                Files.delete(blobStore.resolve(key));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            CompletableFuture.runAsync(() -> {
+                try {
+                    upload.complete(put("deleting"));
+                } catch (Throwable e) {
+                    upload.completeExceptionally(e);
+                }
+            });
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertThat(upload).isNotDone();
+            storedBlobRepository.deleteIfUnreferenced(key);
+        });
+
+        assertThat(upload.get(10, TimeUnit.SECONDS)).isEqualTo(key);
+        assertThat(blobStore.resolve(key)).exists();
+        assertThat(storedBlobRepository.findById(key)).get().extracting(StoredBlob::getRefCount).isEqualTo(1L);
+    }
+
+    private String put(String content) throws IOException {
+        return blobStore.put(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), ".jpg");
+    }
+
+    private void release(String key) {
+        try {
+            blobStore.release(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
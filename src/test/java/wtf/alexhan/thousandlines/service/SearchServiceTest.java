@@ -0,0 +1,121 @@
+package wtf.alexhan.thousandlines.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import wtf.alexhan.thousandlines.model.Comic;
+import wtf.alexhan.thousandlines.repository.ComicRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchServiceTest {
+
+    private final ComicRepository comicRepository = mock(ComicRepository.class);
+    private final SearchService search = new SearchService(comicRepository, new SimpleMeterRegistry());
+
+    @Test
+    void tokenizesCjkIntoBigramsAndLatinIntoWords() {
+        assertThat(SearchService.tokenize("海贼王 One-Piece 猫")).containsExactly("海贼", "贼王", "one", "piece", "猫");
+    }
+
+    @Test
+    void singleCjkCharacterMatchesBigramsStartingAndEndingWithIt() {
+        index(1L, "海贼王");
+        index(2L, "大海");
+        index(3L, "王者");
+        index(4L, "火影忍者");
+
+        assertThat(ids("海")).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids("王")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(ids("者")).containsExactlyInAnyOrder(3L, 4L);
+        assertThat(ids("龙")).isEmpty();
+    }
+
+    @Test
+    void singleCharacterTitleRanksAboveBigramMatches() {
+        index(1L, "大海");
+        index(2L, "海");
+
+        assertThat(ids("海")).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void repeatedCharacterIsCountedOnce() {
+        index(1L, "哈哈");
+        index(2L, "哈欠");
+
+        // 两部漫画各命中一个二元组，得分相同，按 ID 倒序
+        assertThat(ids("哈")).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void removedComicNoLongerMatchesSingleCharacter() {
+        index(1L, "海贼王");
+        index(2L, "王者");
+
+        search.remove(1L);
+
+        assertThat(ids("王")).containsExactly(2L);
+        assertThat(ids("海")).isEmpty();
+    }
+
+    @Test
+    void reindexReplacesOldTerms() {
+        index(1L, "海贼王");
+        index(1L, "火影");
+
+        assertThat(ids("贼")).isEmpty();
+        assertThat(ids("影")).containsExactly(1L);
+    }
+
+    @Test
+    void latinTermsMatchByPrefixAndAllTermsMustMatch() {
+        index(1L, "One Piece");
+        index(2L, "One Punch");
+
+        assertThat(ids("on")).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids("one pie")).containsExactly(1L);
+        assertThat(ids("one 海")).isEmpty();
+    }
+
+    /**
+     * 重建时整页的标签名一次查出，不读取漫画的标签集合
+     */
+    @Test
+    void rebuildLoadsTagNamesPerPage() {
+        Comic first = comic(1L, "海贼王");
+        Comic second = comic(2L, "火影忍者");
+        when(comicRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(first, second)));
+        when(comicRepository.findTagNamesByComicIds(List.of(1L, 2L)))
+                .thenReturn(List.of(new Object[]{1L, "冒险"}, new Object[]{2L, "忍者"}, new Object[]{2L, "热血"}));
+
+        search.rebuildIndex();
+
+        assertThat(ids("冒险")).containsExactly(1L);
+        assertThat(ids("热血")).containsExactly(2L);
+        verify(comicRepository).findTagNamesByComicIds(List.of(1L, 2L));
+    }
+
+    private void index(Long id, String title) {
+        search.index(comic(id, title));
+    }
+
+    private static Comic comic(Long id, String title) {
+        Comic comic = new Comic();
+        comic.setId(id);
+        comic.setTitle(title);
+        return comic;
+    }
+
+    private List<Long> ids(String keyword) {
+        return search.search(keyword, PageRequest.of(0, 20)).getContent();
+    }
+}
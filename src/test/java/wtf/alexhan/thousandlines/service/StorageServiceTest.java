@@ -0,0 +1,175 @@
+package wtf.alexhan.thousandlines.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StorageServiceTest {
+
+    private static final byte[] JPEG_HEADER = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    @TempDir
+    Path dir;
+
+    private CountingBlobStore blobStore;
+    private ExecutorService executor;
+    private StorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new CountingBlobStore(dir.resolve("blobs"));
+        executor = Executors.newFixedThreadPool(4);
+        storage = new StorageService(blobStore, new ImageDerivativeService(new int[]{240}, 0.82f, 40_000_000),
+                new ComicPackStore(dir.toString(), 16), executor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(storage, "uploadDir", dir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void storesPagesInOrderWithManifest() throws IOException {
+        int count = storage.storeComicPages(new MultipartFile[]{page("a.jpg", 1), page("b.jpg", 2)}, "comic");
+
+        assertThat(count).isEqualTo(2);
+        assertThat(storage.comicPageNames("comic")).containsExactly("1.jpg", "2.jpg");
+        assertThat(storage.comicPageKeys("comic")).hasSize(2);
+        assertThat(blobStore.references()).isEqualTo(2);
+        assertThat(dir.resolve("comics/.staging-comic")).doesNotExist();
+    }
+
+    /**
+     * 一页失败时，仍在写入的其他页要等它们写完再释放，否则晚到的内容引用会泄漏
+     */
+    @Test
+    void failedPageReleasesContentOfSlowerPages() throws InterruptedException {
+        MultipartFile[] pages = {
+                new MockMultipartFile("pages", "bad.jpg", "image/jpeg", new byte[]{1, 2, 3}),
+                new SlowPage("slow-1.jpg", 300),
+                new SlowPage("slow-2.jpg", 300),
+        };
+
+        assertThatThrownBy(() -> storage.storeComicPages(pages, "comic"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bad.jpg");
+
+        // 等后台线程全部结束，晚到的写入也要算进去
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(blobStore.references()).isZero();
+        assertThat(dir.resolve("comics/.staging-comic")).doesNotExist();
+        assertThat(dir.resolve("comics/comic")).doesNotExist();
+    }
+
+    private static MockMultipartFile page(String name, int seed) {
+        return new MockMultipartFile("pages", name, "image/jpeg", jpeg(seed));
+    }
+
+    private static byte[] jpeg(int seed) {
+        byte[] content = new byte[64];
+        System.arraycopy(JPEG_HEADER, 0, content, 0, JPEG_HEADER.length);
+        content[10] = (byte) seed;
+        return content;
+    }
+
+    /**
+     * 读取前先等待一段时间，模拟上传较大的页面；和读取磁盘上的上传文件一样不响应中断
+     */
+    private static class SlowPage extends MockMultipartFile {
+        private final long delayMillis;
+
+        SlowPage(String name, long delayMillis) {
+            super("pages", name, "image/jpeg", jpeg(name.hashCode()));
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            boolean interrupted = false;
+            while (System.nanoTime() < deadline) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(deadline - System.nanoTime());
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getInputStream();
+        }
+    }
+
+    /**
+     * 只记录引用数的内存 BlobStore，内容按写入顺序编号
+     */
+    private static class CountingBlobStore implements BlobStore {
+        private final Path root;
+        private final Map<String, Integer> references = new ConcurrentHashMap<>();
+
+        CountingBlobStore(Path root) {
+            this.root = root;
+        }
+
+        int references() {
+            return references.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public String put(InputStream content, String extension) throws IOException {
+            byte[] bytes = content.readAllBytes();
+            String key = HexFormat.of().formatHex(bytes, 0, Math.min(bytes.length, 16)) + bytes.length + extension;
+            Files.createDirectories(root);
+            Files.write(root.resolve(key), bytes);
+            references.merge(key, 1, Integer::sum);
+            return key;
+        }
+
+        @Override
+        public String relativePath(String key) {
+            return "blobs/" + key;
+        }
+
+        @Override
+        public String keyOf(String relativePath) {
+            return relativePath.startsWith("blobs/") ? relativePath.substring("blobs/".length()) : null;
+        }
+
+        @Override
+        public Path resolve(String key) {
+            return root.resolve(key);
+        }
+
+        @Override
+        public void linkTo(String key, Path target) throws IOException {
+            Files.copy(root.resolve(key), target);
+        }
+
+        @Override
+        public void release(String key) {
+            references.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package wtf.alexhan.thousandlines.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 写回后计数器从表中移除，只有写回失败的增量留下等待重试
+ */
+class ViewCountServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ViewCountService service = new ViewCountService(jdbcTemplate);
+
+    @Test
+    void flushDrainsCounters() {
+        service.increment(1L);
+        service.increment(1L);
+        service.increment(2L);
+
+        service.flush();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> batch) -> batch.size() == 2));
+        assertThat(service.pendingComics()).isZero();
+        assertThat(service.getPendingCount(1L)).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsCountsForRetry() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+        service.increment(1L);
+        service.flush();
+        service.increment(1L);
+
+        assertThat(service.getPendingCount(1L)).isEqualTo(2);
+    }
+
+    @Test
+    void discardRemovesCounter() {
+        service.increment(1L);
+
+        service.discard(1L);
+        service.flush();
+
+        assertThat(service.pendingComics()).isZero();
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,60 @@
+package wtf.alexhan.thousandlines.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSessionStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void purgesOnlyExpiredSessions() throws Exception {
+        FileSessionStore store = new FileSessionStore(directory);
+        store.save("expired", new byte[]{1}, Instant.now().minusSeconds(1));
+        store.save("alive", new byte[]{2}, Instant.now().plusSeconds(60));
+
+        assertThat(store.purgeExpired()).isEqualTo(1);
+
+        assertThat(store.load("expired")).isNull();
+        assertThat(store.load("alive")).containsExactly(2);
+    }
+
+    /**
+     * 清理线程读到过期时间后、删除之前，请求线程续期写入了会话：续期后的会话不能被删掉
+     */
+    @Test
+    void sessionRenewedDuringPurgeIsKept() throws Exception {
+        FileSessionStore store = new FileSessionStore(directory);
+        store.save("renewed", new byte[]{1}, Instant.now().minusSeconds(1));
+        AtomicReference<Thread> purger = new AtomicReference<>();
+
+        CompletableFuture<Integer> purged;
+        synchronized (store.lock("renewed")) {
+            purged = CompletableFuture.supplyAsync(() -> {
+                purger.set(Thread.currentThread());
+                try {
+                    return store.purgeExpired();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // 等清理线程读完过期时间、阻塞在会话锁上
+            while (!purged.isDone() && (purger.get() == null || purger.get().getState() != Thread.State.BLOCKED)) {
+                Thread.onSpinWait();
+            }
+            store.save("renewed", new byte[]{2}, Instant.now().plusSeconds(60));
+        }
+
+        assertThat(purged.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(store.load("renewed")).containsExactly(2);
+    }
+}
@@ -0,0 +1,108 @@
+package wtf.alexhan.thousandlines.session;
+
+import org.junit.jupiter.api.Test;
+import wtf.alexhan.thousandlines.dto.SessionUser;
+import wtf.alexhan.thousandlines.model.UserRole;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionCodecTest {
+
+    private static final Instant CREATED = Instant.ofEpochMilli(1_714_557_600_123L);
+    private static final Instant ACCESSED = CREATED.plusSeconds(90);
+
+    @Test
+    void roundTripsEveryAttributeTypeInOrder() throws IOException {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("user", new SessionUser(42L, "读者", UserRole.CREATOR, "avatars/42.png"));
+        attributes.put("flash", "上传成功");
+        attributes.put("lastComic", 7L);
+        attributes.put("page", 3);
+        attributes.put("nsfw", true);
+        attributes.put("cleared", null);
+        attributes.put("history", new ArrayList<>(List.of(1L, 2L, 3L)));
+
+        SessionCodec.Snapshot decoded = SessionCodec.decode(SessionCodec.encode(snapshot(attributes)));
+
+        assertThat(decoded.id()).isEqualTo("session-id");
+        assertThat(decoded.creationTime()).isEqualTo(CREATED);
+        assertThat(decoded.lastAccessedTime()).isEqualTo(ACCESSED);
+        assertThat(decoded.maxInactiveInterval()).isEqualTo(Duration.ofMinutes(30));
+        assertThat(decoded.attributes()).containsExactlyEntriesOf(attributes);
+        assertThat(decoded.attributes().get("lastComic")).isInstanceOf(Long.class);
+        assertThat(decoded.attributes().get("page")).isInstanceOf(Integer.class);
+    }
+
+    @Test
+    void sessionUserWithoutRoleOrAvatar() throws IOException {
+        SessionUser user = new SessionUser(1L, "guest", null, null);
+
+        SessionCodec.Snapshot decoded = SessionCodec.decode(SessionCodec.encode(snapshot(Map.of("user", user))));
+
+        assertThat(decoded.attributes().get("user")).isEqualTo(user);
+    }
+
+    @Test
+    void everyRoleRoundTrips() throws IOException {
+        for (UserRole role : UserRole.values()) {
+            SessionUser user = new SessionUser(1L, "u", role, null);
+
+            SessionCodec.Snapshot decoded = SessionCodec.decode(SessionCodec.encode(snapshot(Map.of("user", user))));
+
+            assertThat(decoded.attributes().get("user")).as(role.name()).isEqualTo(user);
+        }
+    }
+
+    @Test
+    void emptySessionRoundTrips() throws IOException {
+        SessionCodec.Snapshot decoded = SessionCodec.decode(SessionCodec.encode(snapshot(Map.of())));
+
+        assertThat(decoded.attributes()).isEmpty();
+    }
+
+    @Test
+    void rejectsNonSerializableAttribute() {
+        SessionCodec.Snapshot snapshot = snapshot(Map.of("lock", new Object()));
+
+        assertThatThrownBy(() -> SessionCodec.encode(snapshot)).isInstanceOf(NotSerializableException.class);
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        byte[] data = SessionCodec.encode(snapshot(Map.of()));
+        data[0] = 2;
+
+        assertThatThrownBy(() -> SessionCodec.decode(data)).isInstanceOf(IOException.class).hasMessageContaining("版本: 2");
+    }
+
+    @Test
+    void rejectsUnknownAttributeType() throws IOException {
+        byte[] data = SessionCodec.encode(snapshot(Map.of("flag", true)));
+        // 最后两个字节是类型和布尔值
+        data[data.length - 2] = 99;
+
+        assertThatThrownBy(() -> SessionCodec.decode(data)).isInstanceOf(IOException.class).hasMessageContaining("99");
+    }
+
+    @Test
+    void rejectsTruncatedData() throws IOException {
+        byte[] data = SessionCodec.encode(snapshot(Map.of("flash", "上传成功")));
+
+        assertThatThrownBy(() -> SessionCodec.decode(Arrays.copyOf(data, data.length - 3))).isInstanceOf(IOException.class);
+    }
+
+    private static SessionCodec.Snapshot snapshot(Map<String, Object> attributes) {
+        return new SessionCodec.Snapshot("session-id", CREATED, ACCESSED, Duration.ofMinutes(30), attributes);
+    }
+}
@@ -0,0 +1,100 @@
+package wtf.alexhan.thousandlines.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreSessionRepositoryTest {
+
+    private final MemoryStore store = new MemoryStore();
+    private final StoreSessionRepository repository = new StoreSessionRepository(store, Duration.ofMinutes(30), 4);
+
+    @Test
+    void savesNewSessionAndLoadsAttributes() {
+        StoreSession session = repository.createSession();
+        session.setAttribute("name", "value");
+
+        repository.save(session);
+
+        assertThat(session.isChanged()).isFalse();
+        StoreSession loaded = repository.findById(session.getId());
+        assertThat(loaded.<String>getAttribute("name")).isEqualTo("value");
+        assertThat(loaded.isChanged()).isFalse();
+    }
+
+    @Test
+    void unchangedSessionIsNotRewritten() {
+        StoreSession session = repository.createSession();
+        repository.save(session);
+        int writes = store.writes;
+
+        StoreSession loaded = repository.findById(session.getId());
+        loaded.setLastAccessedTime(loaded.getLastAccessedTime().plusSeconds(1));
+        repository.save(loaded);
+
+        assertThat(store.writes).isEqualTo(writes);
+    }
+
+    /**
+     * 异步登录：哈希线程在请求线程复制会话之后、标记已保存之前写入用户，这次修改不能被当作已保存
+     */
+    @Test
+    void attributeSetDuringSaveIsWrittenBySecondSave() {
+        StoreSession session = repository.createSession();
+        store.duringSave = () -> session.setAttribute("user", "alice");
+
+        repository.save(session);
+        store.duringSave = null;
+
+        assertThat(session.isChanged()).isTrue();
+        assertThat(repository.findById(session.getId()).<String>getAttribute("user")).isNull();
+
+        repository.save(session);
+
+        assertThat(session.isChanged()).isFalse();
+        assertThat(repository.findById(session.getId()).<String>getAttribute("user")).isEqualTo("alice");
+    }
+
+    @Test
+    void changedSessionIdDeletesOldEntry() {
+        StoreSession session = repository.createSession();
+        repository.save(session);
+        String oldId = session.getId();
+
+        session.changeSessionId();
+        repository.save(session);
+
+        assertThat(store.data).doesNotContainKey(oldId).containsKey(session.getId());
+    }
+
+    private static class MemoryStore implements SessionStore {
+        private final Map<String, byte[]> data = new HashMap<>();
+        private Runnable duringSave;
+        private int writes;
+
+        @Override
+        public byte[] load(String sessionId) {
+            return data.get(sessionId);
+        }
+
+        @Override
+        public void save(String sessionId, byte[] content, Instant expiresAt) {
+            writes++;
+            data.put(sessionId, content);
+            if (duringSave != null) {
+                duringSave.run();
+            }
+        }
+
+        @Override
+        public void delete(String sessionId) throws IOException {
+            data.remove(sessionId);
+        }
+    }
+}